@@ -0,0 +1,45 @@
+package com.company.game;
+
+import com.company.utils.Pieces;
+
+import java.util.Random;
+
+// The test positions the benchmarks run on: boards with a few random stones of each color, the same ones every run.
+final class BenchmarkPositions {
+
+    // Number of test positions and how many stones each color has in them.
+    static final int POSITIONS = 8;
+    static final int STONES_PER_SIDE = 4;
+
+    // Fixed so every run uses the same positions.
+    static final long SEED = 12345;
+
+    private BenchmarkPositions() {
+    }
+
+    // Builds the test positions out of random stones.
+    static Board[] build(int dimensions) {
+        Random random = new Random(SEED);
+        Board[] positions = new Board[POSITIONS];
+
+        for (int i = 0; i < POSITIONS; i++) {
+            Board board = new Board(dimensions);
+
+            for (int stone = 0; stone < 2 * STONES_PER_SIDE; stone++) {
+                int row;
+                int col;
+
+                do {
+                    row = random.nextInt(dimensions);
+                    col = random.nextInt(dimensions);
+                } while (!board.getValue(row, col).equals(Pieces.EMPTY));
+
+                board.setValue(row, col, (stone % 2 == 0) ? Pieces.WHITE : Pieces.BLACK);
+            }
+
+            positions[i] = board;
+        }
+
+        return positions;
+    }
+}
@@ -3,72 +3,362 @@ package com.company.game;
 import com.company.utils.Pieces;
 import com.company.utils.Side;
 
-import java.awt.*;
-import java.util.*;
+import java.util.Arrays;
 
 // A glorified square matrix class.
 public class Board {
 
-    // Constants that represent pieces used in a numerical 2-d array.
-    private final int EMPTY = 0;
-    private final int PLAYER = Integer.MAX_VALUE;
-    private final int OPPONENT = Integer.MIN_VALUE;
-
     private int dimensions;
-    private Pieces[][] grid;
+
+    // One bit per tile for each color, packed row-major into longs. A tile set in neither is EMPTY.
+    private long[] white;
+    private long[] black;
+
+    // Zobrist key of the position, updated as stones are placed and removed.
+    private long key;
+
+    // Disjoint-set forest over the tiles plus four virtual nodes, one per edge. A stone is joined with its same colored
+    // neighbors and with the edges its color is trying to connect. A negative entry marks a root and holds minus the
+    // size of its set, any other entry is the parent tile.
+    private HexGrid hexGrid;
+    private int[] parent;
+
+    // Removing a stone can split a set, which a disjoint-set forest can't undo by itself. So every write to the forest
+    // is recorded on a trail, and each stone placed remembers where the trail stood before it. Removing the last stone
+    // placed, as a search undoing its moves does, rolls the trail back to there. Sets aren't path compressed so the
+    // unions are the only writes. Removing any other stone marks the forest stale instead, and it is rebuilt the next
+    // time a winner is asked for.
+    private boolean stale;
+
+    // The stones placed since the forest was last built, with the trail length before each, and the trail of
+    // (node, old entry) pairs. Allocated on first use, and not shared between copies.
+    private int[] placed;
+    private int[] marks;
+    private int placedCount;
+    private int[] trail;
+    private int trailLength;
+
+    // Two-distance maps for calculateHeuristic, kept up to date across setValue and clearValue. Not shared between
+    // copies.
+    private TwoDistance twoDistance;
 
     // Default constructor leaves everything as empty;
     public Board() {
         dimensions = 0;
-        grid = null;
+        white = new long[0];
+        black = new long[0];
+        hexGrid = HexGrid.of(0);
+        parent = newForest(0);
+        stale = false;
+        key = 0;
     }
 
     // Creates a new Board of the specified dimensions.
     // Initializes everything to EMPTY.
     public Board(int dimensions) {
         this.dimensions = dimensions;
-        grid = new Pieces[dimensions][dimensions];
-
-        for (Pieces[] row : grid) {
-            Arrays.fill(row, Pieces.EMPTY);
-        }
+        white = new long[numWords(dimensions)];
+        black = new long[numWords(dimensions)];
+        hexGrid = HexGrid.of(dimensions);
+        parent = newForest(dimensions);
+        stale = false;
+        key = 0;
     }
 
-    // Creates a new Board from another Board.
+    // Creates a new Board from another Board. Only the two bitsets and the forest need to be copied.
     public Board(Board board) {
         dimensions = board.dimensions;
-        grid = arrayCopy(board.grid);
+        white = board.white.clone();
+        black = board.black.clone();
+        hexGrid = board.hexGrid;
+        parent = board.parent.clone();
+        stale = board.stale;
+        key = board.key;
     }
 
-    // Helper method to copy arrays because two dimensional arrays have trouble being copied.
-    private Pieces[][] arrayCopy(Pieces[][] arr) {
-        Pieces[][] ret = new Pieces[dimensions][dimensions];
-
-        for (int row = 0; row < dimensions; row++) {
-            for (int col = 0; col < dimensions; col++) {
-                ret[row][col] = arr[row][col];
-            }
-        }
+    // Makes this Board a copy of another Board of the same size without allocating. The two-distance maps are dropped
+    // since they describe the old position.
+    public void copyFrom(Board board) {
+        if (dimensions != board.dimensions) {
+            throw new IllegalArgumentException("Boards must be the same size");
+        }
+
+        System.arraycopy(board.white, 0, white, 0, white.length);
+        System.arraycopy(board.black, 0, black, 0, black.length);
+        System.arraycopy(board.parent, 0, parent, 0, parent.length);
+        stale = board.stale;
+        key = board.key;
+        twoDistance = null;
+        placedCount = 0;
+        trailLength = 0;
+    }
 
-        return ret;
+    // Number of longs needed to hold one bit for every tile.
+    private static int numWords(int dimensions) {
+        return (dimensions * dimensions + 63) >>> 6;
     }
 
     // Returns the value associated with the location in the Board.
     public Pieces getValue(int row, int col) {
         validLocation(row, col);
-        return grid[row][col];
+        int index = row * dimensions + col;
+
+        if (isSet(white, index)) {
+            return Pieces.WHITE;
+        }
+
+        if (isSet(black, index)) {
+            return Pieces.BLACK;
+        }
+
+        return Pieces.EMPTY;
     }
 
     // Sets the value at the specified location in the Board.
     public void setValue(int row, int col, Pieces val) {
         validLocation(row, col);
-        grid[row][col] = val;
+        int index = row * dimensions + col;
+
+        if (isSet(white, index) || isSet(black, index)) {
+            markStale();
+        }
+
+        if (twoDistance != null) {
+            twoDistance.tileChanged(index, getTile(index));
+        }
+
+        removeStone(index);
+        key ^= hexGrid.zobrist(index, val);
+
+        if (val == Pieces.WHITE) {
+            setBit(white, index);
+
+        } else if (val == Pieces.BLACK) {
+            setBit(black, index);
+        }
+
+        if (!stale && val != Pieces.EMPTY) {
+            pushPlaced(index);
+            connect(index, val);
+        }
     }
 
     // Sets the value at a specified location in the Board to EMPTY.
     public void clearValue(int row, int col) {
         validLocation(row, col);
-        grid[row][col] = Pieces.EMPTY;
+        int index = row * dimensions + col;
+
+        if (!stale && placedCount > 0 && placed[placedCount - 1] == index) {
+            undoPlaced();
+
+        } else if (isSet(white, index) || isSet(black, index)) {
+            markStale();
+        }
+
+        if (twoDistance != null) {
+            twoDistance.tileChanged(index, getTile(index));
+        }
+
+        removeStone(index);
+    }
+
+    // Records a stone about to be joined into the forest.
+    private void pushPlaced(int index) {
+        if (placed == null) {
+            int size = dimensions * dimensions;
+            // Each tile can only be placed on once before the forest goes stale.
+            placed = new int[size];
+            marks = new int[size];
+
+            // A stone makes at most 8 unions, one per neighbor and edge, each writing two entries.
+            trail = new int[2 * 16 * size];
+        }
+
+        placed[placedCount] = index;
+        marks[placedCount] = trailLength;
+        placedCount++;
+    }
+
+    // Rolls the forest back to before the last stone placed was joined into it.
+    private void undoPlaced() {
+        placedCount--;
+
+        while (trailLength > marks[placedCount]) {
+            trailLength -= 2;
+            parent[trail[trailLength]] = trail[trailLength + 1];
+        }
+    }
+
+    // Writes an entry of the forest, recording the old one while stones are being tracked.
+    private void setParent(int node, int value) {
+        if (placedCount > 0) {
+            trail[trailLength++] = node;
+            trail[trailLength++] = parent[node];
+        }
+
+        parent[node] = value;
+    }
+
+    // Drops the history, the forest has to be rebuilt before it can be used.
+    private void markStale() {
+        stale = true;
+        placedCount = 0;
+        trailLength = 0;
+    }
+
+    // Takes whatever stone is on the tile off the Board, keeping the Zobrist key in step.
+    private void removeStone(int index) {
+        if (isSet(white, index)) {
+            key ^= hexGrid.zobrist(index, Pieces.WHITE);
+            clearBit(white, index);
+
+        } else if (isSet(black, index)) {
+            key ^= hexGrid.zobrist(index, Pieces.BLACK);
+            clearBit(black, index);
+        }
+    }
+
+    // Returns the 64-bit Zobrist key of the position. Equal positions always have equal keys.
+    public long zobristKey() {
+        return key;
+    }
+
+    // Returns the player who has connected their two edges, or EMPTY if nobody has yet. WHITE connects the LEFT and
+    // RIGHT edges and BLACK connects the TOP and BOTTOM edges.
+    public Pieces winner() {
+        if (stale) {
+            rebuildForest();
+        }
+
+        int size = dimensions * dimensions;
+
+        if (find(size + Side.LEFT.ordinal()) == find(size + Side.RIGHT.ordinal())) {
+            return Pieces.WHITE;
+        }
+
+        if (find(size + Side.TOP.ordinal()) == find(size + Side.BOTTOM.ordinal())) {
+            return Pieces.BLACK;
+        }
+
+        return Pieces.EMPTY;
+    }
+
+    // Creates a forest where every tile and edge is in its own set.
+    private static int[] newForest(int dimensions) {
+        int[] forest = new int[dimensions * dimensions + Side.values().length];
+        Arrays.fill(forest, -1);
+        return forest;
+    }
+
+    // Recreates the forest from the stones currently on the Board.
+    private void rebuildForest() {
+        Arrays.fill(parent, -1);
+
+        for (int index = 0; index < dimensions * dimensions; index++) {
+            if (isSet(white, index)) {
+                connect(index, Pieces.WHITE);
+
+            } else if (isSet(black, index)) {
+                connect(index, Pieces.BLACK);
+            }
+        }
+
+        stale = false;
+    }
+
+    // Joins a newly placed stone with its same colored neighbors and with any of its own edges it touches.
+    private void connect(int index, Pieces val) {
+        long[] bits = val == Pieces.WHITE ? white : black;
+
+        for (int dir = 0; dir < 6; dir++) {
+            int neighbor = hexGrid.neighbor(index, dir);
+
+            if (neighbor != HexGrid.OFF_BOARD && isSet(bits, neighbor)) {
+                union(index, neighbor);
+            }
+        }
+
+        int size = dimensions * dimensions;
+        int row = index / dimensions;
+        int col = index % dimensions;
+
+        if (val == Pieces.WHITE) {
+            if (col == 0) {
+                union(index, size + Side.LEFT.ordinal());
+            }
+
+            if (col == dimensions - 1) {
+                union(index, size + Side.RIGHT.ordinal());
+            }
+
+        } else {
+            if (row == 0) {
+                union(index, size + Side.TOP.ordinal());
+            }
+
+            if (row == dimensions - 1) {
+                union(index, size + Side.BOTTOM.ordinal());
+            }
+        }
+    }
+
+    // Returns the root of the set containing the node. Union by size keeps the trees shallow enough without
+    // compressing paths, which would have to be undone too.
+    private int find(int node) {
+        while (parent[node] >= 0) {
+            node = parent[node];
+        }
+
+        return node;
+    }
+
+    // Merges the sets containing the two nodes, hanging the smaller set under the larger one.
+    private void union(int first, int second) {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+
+        if (firstRoot == secondRoot) {
+            return;
+        }
+
+        if (parent[firstRoot] > parent[secondRoot]) {
+            int temp = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = temp;
+        }
+
+        setParent(firstRoot, parent[firstRoot] + parent[secondRoot]);
+        setParent(secondRoot, firstRoot);
+    }
+
+    // Returns the value of a tile by its row-major index, i.e. row * dimensions + col.
+    public Pieces getTile(int index) {
+        if (isSet(white, index)) {
+            return Pieces.WHITE;
+        }
+
+        return isSet(black, index) ? Pieces.BLACK : Pieces.EMPTY;
+    }
+
+    // Copies the bits of a color's stones into the array, one bit per tile packed row-major into longs.
+    public void copyBits(Pieces val, long[] bits) {
+        long[] source = (val == Pieces.WHITE) ? white : black;
+        System.arraycopy(source, 0, bits, 0, source.length);
+    }
+
+    // Returns true if the tile's bit is set.
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    // Sets the tile's bit.
+    private static void setBit(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    // Clears the tile's bit.
+    private static void clearBit(long[] bits, int index) {
+        bits[index >>> 6] &= ~(1L << index);
     }
 
     // Returns true if the location is in bounds.
@@ -82,6 +372,11 @@ public class Board {
         }
     }
 
+    // Returns the neighbor table shared by Boards of this size.
+    public HexGrid getHexGrid() {
+        return hexGrid;
+    }
+
     // Returns the length of the Board.
     public int getDimensions() {
         return dimensions;
@@ -99,16 +394,16 @@ public class Board {
 
         Board board = (Board) obj;
 
-        return dimensions == board.dimensions &&
-                Arrays.deepEquals(grid, board.grid);
+        // Different keys settle almost every comparison without touching the bitsets.
+        return key == board.key &&
+                dimensions == board.dimensions &&
+                Arrays.equals(white, board.white) &&
+                Arrays.equals(black, board.black);
     }
 
     @Override
     public int hashCode() {
-        int result = 17;
-        result = 31 * result + dimensions;
-        result = 31 * result + Arrays.deepHashCode(grid);
-        return result;
+        return (int) (key ^ (key >>> 32));
     }
 
     @Override
@@ -117,7 +412,7 @@ public class Board {
 
         for (int row = 0; row < dimensions; row++) {
             for (int col = 0; col < dimensions; col++) {
-                sb.append(grid[row][col].getVal() + " ");
+                sb.append(getValue(row, col).getVal() + " ");
             }
 
             sb.append("\n");
@@ -185,7 +480,7 @@ public class Board {
         String token = "|";
         System.out.print(token);
         for (int mid = 0; mid < dimensions; mid++) {
-            System.out.print(whiteSpace + grid[row][mid] + whiteSpace + token);
+            System.out.print(whiteSpace + getValue(row, mid) + whiteSpace + token);
         }
 
         System.out.println(" WHITE");
@@ -215,310 +510,13 @@ public class Board {
         System.out.println();
     }
 
-    // Calculates the heuristic using two-distance.
+    // Calculates the heuristic using two-distance. The maps are created on first use and then repaired incrementally
+    // as stones are placed and removed.
     public double calculateHeuristic(Pieces player) {
-
-        int[][] pieceOne = new int[dimensions][dimensions];
-        int[][] pieceTwo = new int[dimensions][dimensions];
-
-        for (int row = 0; row < dimensions; row++) {
-            pieceOne[row][0] = 1;
-            pieceTwo[row][dimensions - 1] = 1;
+        if (twoDistance == null) {
+            twoDistance = new TwoDistance(dimensions);
         }
 
-        boardToIntCopy(pieceOne, Pieces.changePlayer(player));
-        boardToIntCopy(pieceTwo, Pieces.changePlayer(player));
-
-        calculateWhiteLeft(pieceOne, player);
-        calculateWhiteRight(pieceTwo, player);
-
-        int twoDistanceWhite = getMinVal(pieceOne, pieceTwo);
-
-        pieceOne = new int[dimensions][dimensions];
-        pieceTwo = new int[dimensions][dimensions];
-
-        Arrays.fill(pieceOne[0], 1);
-        Arrays.fill(pieceTwo[dimensions - 1], 1);
-
-        boardToIntCopy(pieceOne, player);
-        boardToIntCopy(pieceTwo, player);
-
-        calculateBlackTop(pieceOne, player);
-        calculateBlackBottom(pieceTwo, player);
-
-        int twoDistanceBlack = getMinVal(pieceOne, pieceTwo);
-
-        return player.equals(Pieces.BLACK) ? (double) twoDistanceWhite / twoDistanceBlack :
-                                             (double) twoDistanceBlack / twoDistanceWhite;
-    }
-
-    // Translates a Pieces 2-d array to an int 2-d array.
-    private void boardToIntCopy(int[][] arr, Pieces player) {
-        Pieces opponent = Pieces.changePlayer(player);
-
-        for (int row = 0; row < dimensions; row++) {
-            for (int col = 0; col < dimensions; col++) {
-
-                if (grid[row][col].equals(player)) {
-                    arr[row][col] = PLAYER;
-                }
-
-                if (grid[row][col].equals(opponent)) {
-                    arr[row][col] = OPPONENT;
-                }
-            }
-        }
-    }
-
-    // Calculates the two-distances for the WHITE piece to the LEFT edge by setting each cell to the appropriate value.
-    private void calculateWhiteLeft(int[][] whiteLeft, Pieces player) {
-        Queue<Point> skipped = new LinkedList<>();
-
-        for (int col = 1; col < dimensions; col++) {
-            for (int row = 0; row < dimensions; row++) {
-
-                if (whiteLeft[row][col] == EMPTY && !secondMin(Side.LEFT, whiteLeft, row, col, false)) {
-                    skipped.add(new Point(row, col));
-                }
-            }
-        }
-
-        while (!skipped.isEmpty()) {
-            Point skippedPoint = skipped.poll();
-            secondMin(Side.LEFT, whiteLeft, skippedPoint.x, skippedPoint.y, true);
-        }
-    }
-
-    // Calculates the two-distances for the WHITE piece to the RIGHT edge by setting each cell to the appropriate value.
-    private void calculateWhiteRight(int[][] whiteRight, Pieces player) {
-        Queue<Point> skipped = new LinkedList<>();
-
-        for (int col = dimensions - 2; col >= 0; col--) {
-            for (int row = 0; row < dimensions; row++) {
-
-                if (whiteRight[row][col] == EMPTY && !secondMin(Side.RIGHT, whiteRight, row, col, false)) {
-                    skipped.add(new Point(row, col));
-                }
-            }
-        }
-
-        while (!skipped.isEmpty()) {
-            Point skippedPoint = skipped.poll();
-            secondMin(Side.RIGHT, whiteRight, skippedPoint.x, skippedPoint.y, true);
-        }
-    }
-
-    // Calculates the two-distances for the BLACK piece to the TOP edge by setting each cell to the appropriate value.
-    private void calculateBlackTop(int[][] blackTop, Pieces player) {
-        Queue<Point> skipped = new LinkedList<>();
-
-        for (int row = 1; row < dimensions; row++) {
-            for (int col = 0; col < dimensions; col++) {
-
-                if (blackTop[row][col] == EMPTY && !secondMin(Side.TOP, blackTop, row, col, false)) {
-                    skipped.add(new Point(row, col));
-                }
-            }
-        }
-
-        while (!skipped.isEmpty()) {
-            Point skippedPoint = skipped.poll();
-            secondMin(Side.TOP, blackTop, skippedPoint.x, skippedPoint.y, true);
-        }
-    }
-
-    // Calculates the two-distances for the BLACK piece to the BOTTOM edge by setting each cell to the appropriate value.
-    private void calculateBlackBottom(int[][] blackBottom, Pieces player) {
-        Queue<Point> skipped = new LinkedList<>();
-
-        for (int row = dimensions - 2; row >= 0; row--) {
-            for (int col = 0; col < dimensions; col++) {
-
-                if (blackBottom[row][col] == EMPTY && !secondMin(Side.BOTTOM, blackBottom, row, col, false)) {
-                    skipped.add(new Point(row, col));
-                }
-            }
-        }
-
-        while (!skipped.isEmpty()) {
-            Point skippedPoint = skipped.poll();
-            secondMin(Side.BOTTOM, blackBottom, skippedPoint.x, skippedPoint.y, true);
-        }
-    }
-
-    // If there are two neighboring points, set the location in arr to the second lowest value + 1.
-    // Else, if skipped is true, then set the location in arr to the lowest value + 1 or infinity if there is no
-    // neighboring value.
-    // Returns true if a second lowest neighbor was found.
-    public boolean secondMin(Side side, int[][] arr, int row, int col, boolean skipped) {
-        Set<Point> connections = new HashSet<>();
-        fillConnections(arr, row, col, connections);
-
-        Set<Point> locations = new HashSet<>();
-        fillLocations(side, arr, locations, connections);
-
-        int min = Integer.MAX_VALUE;
-        int secondMin =  Integer.MAX_VALUE;
-
-        for (Point loc : locations) {
-
-            int val = 0;
-            if (inRange(loc.x, loc.y)) {
-                val = arr[loc.x][loc.y];
-            }
-
-            if (val < min) {
-
-                secondMin = min;
-                min = val;
-
-            } else if (val < secondMin) {
-                    secondMin = val;
-            }
-        }
-
-        if (secondMin != Integer.MAX_VALUE) {
-            arr[row][col] = secondMin + 1;
-            return true;
-        }
-
-        if (skipped) {
-            if (min != Integer.MAX_VALUE) {
-                arr[row][col] = min + 1;
-
-            } else {
-                arr[row][col] = EMPTY;
-            }
-        }
-
-        return false;
-    }
-
-    // Finds all points that make up any bridges connected to a tile.
-    private void fillConnections(int[][] arr, int row, int col, Set<Point> connections) {
-        connections.add(new Point(row, col));
-
-        Point coord = new Point(row + 1, col);
-        if (isConnection(row + 1, col, arr) && !connections.contains(coord)) {
-            fillConnections(arr, row + 1, col, connections);
-        }
-
-        coord = new Point(row - 1, col);
-        if (isConnection(row - 1, col, arr) && !connections.contains(coord)) {
-            fillConnections(arr, row - 1, col, connections);
-        }
-
-        coord = new Point(row, col + 1);
-        if (isConnection(row, col + 1, arr) && !connections.contains(coord)) {
-            fillConnections(arr, row, col + 1, connections);
-        }
-
-        coord = new Point(row, col - 1);
-        if (isConnection(row, col - 1, arr) && !connections.contains(coord)) {
-            fillConnections(arr, row, col - 1, connections);
-        }
-
-        coord = new Point(row + 1, col - 1);
-        if (isConnection(row + 1, col - 1, arr) && !connections.contains(coord)) {
-            fillConnections(arr, row + 1, col - 1, connections);
-        }
-
-        coord = new Point(row - 1, col + 1);
-        if (isConnection(row - 1, col + 1, arr) && !connections.contains(coord)) {
-            fillConnections(arr, row - 1, col + 1, connections);
-        }
-    }
-
-    // Finds all occupied neighbors of a bridge.
-    private void fillLocations(Side side, int[][] arr, Set<Point> locations, Set<Point> connections) {
-        for (Point tile : connections) {
-
-            Point coord = new Point(tile.x + 1, tile.y);
-            if (sideValidCell(side, coord.x, coord.y, arr) && !locations.contains(coord)) {
-                locations.add(coord);
-            }
-
-            coord = new Point(tile.x - 1, tile.y);
-            if (sideValidCell(side, coord.x, coord.y, arr) && !locations.contains(coord)) {
-                locations.add(coord);
-            }
-
-            coord = new Point(tile.x, tile.y + 1);
-            if (sideValidCell(side, coord.x, coord.y, arr) && !locations.contains(coord)) {
-                locations.add(coord);
-            }
-
-            coord = new Point(tile.x, tile.y - 1);
-            if (sideValidCell(side, coord.x, coord.y, arr) && !locations.contains(coord)) {
-                locations.add(coord);
-            }
-
-            coord = new Point(tile.x + 1, tile.y - 1);
-            if (sideValidCell(side, coord.x, coord.y, arr) && !locations.contains(coord)) {
-                locations.add(coord);
-            }
-
-            coord = new Point(tile.x - 1, tile.y + 1);
-            if (sideValidCell(side, coord.x, coord.y, arr) && !locations.contains(coord)) {
-                locations.add(coord);
-            }
-        }
-    }
-
-    // Finds the min value in a 2-d array.
-    private int getMinVal(int[][] pieceOne, int[][] pieceTwo) {
-        int min = Integer.MAX_VALUE;
-        for (int row = 0; row < dimensions; row++) {
-            for (int col = 0; col < dimensions; col++) {
-
-                if (validCell(row, col, pieceOne) && validCell(row, col, pieceTwo)) {
-                    int val = Math.abs(pieceOne[row][col] + pieceTwo[row][col]);
-                    if (val < min) {
-                        min = val;
-                    }
-                }
-
-            }
-        }
-
-        return min;
-    }
-
-    // Returns true if a point is in range and occupied by PLAYER.
-    private boolean isConnection(int row, int col, int[][] arr) {
-        return inRange(row, col) && (arr[row][col] == PLAYER);
-    }
-
-    // Returns true if the location isn't occupied or out of bounds.
-    private boolean validCell(int row, int col, int[][] arr) {
-        return inRange(row, col) && notOccupied(row, col, arr);
-    }
-
-    // Returns true if the location isn't occupied or out of bounds. This out of bounds is subjective based on what edge
-    // is being tested for.
-    private boolean sideValidCell(Side side, int row, int col, int[][] arr) {
-        switch(side) {
-            case LEFT:
-                return (col < dimensions) && (row >= 0) && (row < dimensions) && (col < 0 || notOccupied(row, col, arr));
-            case RIGHT:
-                return (col >= 0) && (row >= 0) && (row < dimensions) && (col >= dimensions || notOccupied(row, col, arr));
-            case TOP:
-                return (col >= 0) && (col < dimensions) && (row < dimensions) && (row < 0 || notOccupied(row, col, arr));
-            case BOTTOM:
-                return (col >= 0) && (col < dimensions) && (row >= 0) && (row >= dimensions || notOccupied(row, col, arr));
-            default:
-                throw new IllegalArgumentException("Wrong side entered");
-        }
-    }
-
-    // Returns true if the point is in bounds of the Board.
-    private boolean inRange(int row, int col) {
-        return (row >= 0) && (row < dimensions) && (col >= 0) && (col < dimensions);
-    }
-
-    // Returns true if the point is not occupied. In this context it means if there's a two-distance heuristic
-    // associated with the cell.
-    private boolean notOccupied(int row, int col, int[][] arr) {
-        return (arr[row][col] != EMPTY) && (arr[row][col] != PLAYER) && (arr[row][col] != OPPONENT);
+        return twoDistance.calculateHeuristic(this, player);
     }
 }
@@ -4,7 +4,6 @@ import com.company.players.*;
 import com.company.utils.Decisions;
 import com.company.utils.GoingFirst;
 import com.company.utils.Pieces;
-import com.company.utils.utils;
 
 import java.awt.*;
 import java.util.*;
@@ -63,6 +62,24 @@ public class Game {
             default:
                 throw new IllegalArgumentException("Bad decision");
         }
+
+        ponderAgainstHuman(playerOne, playerTwo);
+        ponderAgainstHuman(playerTwo, playerOne);
+    }
+
+    // Lets an MCTS engine search on a human opponent's time. Against another engine it would only take threads away
+    // from it.
+    private static void ponderAgainstHuman(Player engine, Player opponent) {
+        if (!(opponent instanceof HumanPlayer)) {
+            return;
+        }
+
+        if (engine instanceof MonteCarloPlayer) {
+            ((MonteCarloPlayer) engine).setPondering(true);
+
+        } else if (engine instanceof EnhancedMonteCarloPlayer) {
+            ((EnhancedMonteCarloPlayer) engine).setPondering(true);
+        }
     }
 
     // Prints instructions and then plays the selected game. Players 1 and 2 alternate moves until someone wins.
@@ -81,7 +98,7 @@ public class Game {
 
             board.print();
 
-            if (utils.terminateWhite(board)) {
+            if (board.winner().equals(Pieces.WHITE)) {
                 System.out.println("\t\t**************");
                 System.out.println("******************************");
                 System.out.println("Congratulations! Player 1 won!");
@@ -95,7 +112,7 @@ public class Game {
 
             board.print();
 
-            if (utils.terminateBlack(board)) {
+            if (board.winner().equals(Pieces.BLACK)) {
                 System.out.println("\t\t**************");
                 System.out.println("******************************");
                 System.out.println("Congratulations! Player 2 won!");
@@ -104,5 +121,8 @@ public class Game {
                 break;
             }
         }
+
+        playerOne.gameOver();
+        playerTwo.gameOver();
     }
 }
@@ -0,0 +1,99 @@
+package com.company.game;
+
+import com.company.utils.Pieces;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// Precomputed neighbor table for a hex board of a given size. Tiles are numbered row-major, so the tile at (row, col)
+// is row * dimensions + col. One table is shared by every Board of the same size.
+public final class HexGrid {
+
+    // Marks a neighbor that falls off the board.
+    public static final int OFF_BOARD = -1;
+
+    // Offsets of the six neighbors of a tile, in clockwise order starting from the upper left neighbor. Consecutive
+    // entries (wrapping around) are neighbors of each other as well.
+    public static final int[] ROW_OFFSETS = {-1, -1, 0, 1, 1, 0};
+    public static final int[] COL_OFFSETS = {0, 1, 1, 0, -1, -1};
+
+    private static final Map<Integer, HexGrid> grids = new HashMap<>();
+
+    private final int dimensions;
+
+    // neighbors[6 * tile + direction] is the neighboring tile in that direction or OFF_BOARD.
+    private final int[] neighbors;
+
+    // Random Zobrist keys, one per tile for each color. A position's key is the XOR of the keys of its stones.
+    private final long[] whiteKeys;
+    private final long[] blackKeys;
+
+    private HexGrid(int dimensions) {
+        this.dimensions = dimensions;
+        neighbors = new int[6 * dimensions * dimensions];
+
+        for (int row = 0; row < dimensions; row++) {
+            for (int col = 0; col < dimensions; col++) {
+                for (int dir = 0; dir < 6; dir++) {
+                    int neighborRow = row + ROW_OFFSETS[dir];
+                    int neighborCol = col + COL_OFFSETS[dir];
+
+                    boolean inRange = neighborRow >= 0 && neighborRow < dimensions &&
+                                      neighborCol >= 0 && neighborCol < dimensions;
+                    neighbors[6 * (row * dimensions + col) + dir] =
+                            inRange ? neighborRow * dimensions + neighborCol : OFF_BOARD;
+                }
+            }
+        }
+
+        // Seeded so keys are stable from run to run, e.g. for opening books.
+        Random random = new Random(0x9E3779B97F4A7C15L ^ dimensions);
+        whiteKeys = new long[dimensions * dimensions];
+        blackKeys = new long[dimensions * dimensions];
+
+        for (int tile = 0; tile < dimensions * dimensions; tile++) {
+            whiteKeys[tile] = random.nextLong();
+            blackKeys[tile] = random.nextLong();
+        }
+    }
+
+    // Returns the shared grid for boards of the given size.
+    public static synchronized HexGrid of(int dimensions) {
+        HexGrid grid = grids.get(dimensions);
+
+        if (grid == null) {
+            grid = new HexGrid(dimensions);
+            grids.put(dimensions, grid);
+        }
+
+        return grid;
+    }
+
+    // Returns the length of the board this grid describes.
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    // Returns the number of tiles on the board.
+    public int size() {
+        return dimensions * dimensions;
+    }
+
+    // Returns the neighbor of a tile in one of the six directions, or OFF_BOARD.
+    public int neighbor(int tile, int dir) {
+        return neighbors[6 * tile + dir];
+    }
+
+    // Returns the Zobrist key of a stone of the given color on a tile. EMPTY tiles have a key of 0.
+    public long zobrist(int tile, Pieces val) {
+        switch (val) {
+            case WHITE:
+                return whiteKeys[tile];
+            case BLACK:
+                return blackKeys[tile];
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.company.game;
+
+import com.company.search.PlayoutEngine;
+import com.company.utils.Pieces;
+
+import java.awt.*;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+// Measures how many random playouts per second the MCTS default policy runs. Plays out the same positions for a fixed
+// time with the PlayoutEngine, with and without bridge saving, and with the old policy that shuffles a list of Points
+// and fills a Board copy, and prints the rates. See PlayoutPolicyBenchmark for how the policies play.
+//
+// Usage: PlayoutBenchmark [dimensions] [seconds]
+public class PlayoutBenchmark {
+
+    private static final int DEFAULT_DIMENSIONS = 8;
+    private static final int DEFAULT_SECONDS = 3;
+
+    public static void main(String[] args) {
+        int dimensions = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_DIMENSIONS;
+        long millis = 1000L * ((args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_SECONDS);
+
+        Board[] positions = BenchmarkPositions.build(dimensions);
+
+        // One short untimed pass of each so the JIT has compiled them before anything is measured.
+        runEngine(positions, millis / 4, false);
+        runEngine(positions, millis / 4, true);
+        runList(positions, millis / 4);
+
+        double engine = runEngine(positions, millis, false);
+        double saving = runEngine(positions, millis, true);
+        double list = runList(positions, millis);
+
+        System.out.println("Board " + dimensions + "x" + dimensions + ", " + positions.length + " positions");
+        System.out.printf("PlayoutEngine: %.0f playouts/s%n", engine);
+        System.out.printf("With bridge saving: %.0f playouts/s%n", saving);
+        System.out.printf("Shuffled list: %.0f playouts/s%n", list);
+        System.out.printf("Speedup: %.2fx%n", engine / Math.max(list, 1));
+    }
+
+    // Plays out the positions in turn with the PlayoutEngine for the time and returns the playouts per second.
+    private static double runEngine(Board[] positions, long millis, boolean bridgeSaving) {
+        PlayoutEngine engine = new PlayoutEngine(BenchmarkPositions.SEED);
+        engine.setBridgeSaving(bridgeSaving);
+        long playouts = 0;
+        long start = System.nanoTime();
+        long end = start + millis * 1000000;
+
+        while (System.nanoTime() < end) {
+            for (Board position : positions) {
+                engine.playout(position, Pieces.WHITE);
+            }
+
+            playouts += positions.length;
+        }
+
+        return playouts * 1e9 / (System.nanoTime() - start);
+    }
+
+    // Plays out the positions in turn the old way for the time and returns the playouts per second.
+    private static double runList(Board[] positions, long millis) {
+        Random random = new Random(BenchmarkPositions.SEED);
+        long playouts = 0;
+        long start = System.nanoTime();
+        long end = start + millis * 1000000;
+
+        while (System.nanoTime() < end) {
+            for (Board position : positions) {
+                Board board = new Board(position);
+                List<Point> emptyTiles = new LinkedList<>();
+
+                for (int row = 0; row < board.getDimensions(); row++) {
+                    for (int col = 0; col < board.getDimensions(); col++) {
+
+                        if (board.getValue(row, col).equals(Pieces.EMPTY)) {
+                            emptyTiles.add(new Point(row, col));
+                        }
+                    }
+                }
+
+                Collections.shuffle(emptyTiles, random);
+
+                Pieces player = Pieces.BLACK;
+                for (Point tile : emptyTiles) {
+                    player = Pieces.changePlayer(player);
+                    board.setValue(tile.x, tile.y, player);
+                }
+
+                board.winner();
+            }
+
+            playouts += positions.length;
+        }
+
+        return playouts * 1e9 / (System.nanoTime() - start);
+    }
+}
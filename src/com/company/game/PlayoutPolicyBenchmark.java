@@ -0,0 +1,73 @@
+package com.company.game;
+
+import com.company.players.MonteCarloPlayer;
+import com.company.utils.Pieces;
+
+// Compares the playout policies of MonteCarloPlayer by how they play. Two players that only differ in whether their
+// playouts save broken bridges play each other from the benchmark positions, each position twice with the colors
+// switched. The win rate of bridge saving is printed along with how many simulations per second each side managed,
+// so strength per playout can be weighed against the cost of the patterns.
+//
+// Usage: PlayoutPolicyBenchmark [dimensions] [games] [milliseconds per move]
+public class PlayoutPolicyBenchmark {
+
+    private static final int DEFAULT_DIMENSIONS = 8;
+    private static final int DEFAULT_GAMES = 20;
+    private static final long DEFAULT_TIME_LIMIT = 500;
+
+    public static void main(String[] args) {
+        int dimensions = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_DIMENSIONS;
+        int games = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_GAMES;
+        long timeLimit = (args.length > 2) ? Long.parseLong(args[2]) : DEFAULT_TIME_LIMIT;
+
+        // Simulations and search time in milliseconds of the random and the bridge saving side.
+        long[] simulations = new long[2];
+        long[] time = new long[2];
+        int savingWins = 0;
+
+        Board[] positions = BenchmarkPositions.build(dimensions);
+
+        for (int game = 0; game < games; game++) {
+            Pieces savingColor = (game % 2 == 0) ? Pieces.WHITE : Pieces.BLACK;
+            MonteCarloPlayer white = newPlayer(Pieces.WHITE, savingColor == Pieces.WHITE, timeLimit);
+            MonteCarloPlayer black = newPlayer(Pieces.BLACK, savingColor == Pieces.BLACK, timeLimit);
+
+            Board board = new Board(positions[game / 2 % positions.length]);
+            MonteCarloPlayer toMove = white;
+
+            while (board.winner().equals(Pieces.EMPTY)) {
+                long start = System.nanoTime();
+                toMove.makeMove(board);
+
+                int side = (toMove == white) == (savingColor == Pieces.WHITE) ? 1 : 0;
+                simulations[side] += toMove.getSimulations();
+                time[side] += (System.nanoTime() - start) / 1000000;
+
+                toMove = (toMove == white) ? black : white;
+            }
+
+            white.gameOver();
+            black.gameOver();
+
+            if (board.winner().equals(savingColor)) {
+                savingWins++;
+            }
+        }
+
+        System.out.println("Board " + dimensions + "x" + dimensions + ", " + games + " games, " + timeLimit +
+                           " ms per move");
+        System.out.printf("Random playouts: %.0f simulations/s%n", simulations[0] * 1000.0 / Math.max(time[0], 1));
+        System.out.printf("Bridge saving: %.0f simulations/s%n", simulations[1] * 1000.0 / Math.max(time[1], 1));
+        System.out.printf("Bridge saving won %d of %d games (%.0f%%)%n", savingWins, games,
+                          100.0 * savingWins / Math.max(games, 1));
+    }
+
+    // Creates a single threaded player without pondering, so both sides get the same CPU.
+    private static MonteCarloPlayer newPlayer(Pieces color, boolean bridgeSaving, long timeLimit) {
+        MonteCarloPlayer player = new MonteCarloPlayer(color);
+        player.setThreads(1);
+        player.setBridgeSaving(bridgeSaving);
+        player.setTimeLimit(timeLimit);
+        return player;
+    }
+}
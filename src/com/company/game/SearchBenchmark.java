@@ -0,0 +1,53 @@
+package com.company.game;
+
+import com.company.players.AlphaBetaPlayer;
+import com.company.utils.Pieces;
+
+// Measures how much faster the alpha beta search gets with more threads. Searches the same positions to a fixed
+// depth with one thread and with several, and prints the times.
+//
+// Usage: SearchBenchmark [dimensions] [depth] [threads]
+public class SearchBenchmark {
+
+    private static final int DEFAULT_DIMENSIONS = 8;
+    private static final int DEFAULT_DEPTH = 4;
+
+    public static void main(String[] args) {
+        int dimensions = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_DIMENSIONS;
+        int depth = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_DEPTH;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        Board[] positions = BenchmarkPositions.build(dimensions);
+
+        // One untimed pass so the JIT has compiled the search before anything is measured.
+        run(positions, depth, 1);
+
+        long single = run(positions, depth, 1);
+        long parallel = run(positions, depth, threads);
+
+        System.out.println("Board " + dimensions + "x" + dimensions + ", depth " + depth + ", " + positions.length +
+                           " positions");
+        System.out.println("1 thread: " + single + " ms");
+        System.out.println(threads + " threads: " + parallel + " ms");
+        System.out.printf("Speedup: %.2fx%n", (double) single / Math.max(parallel, 1));
+    }
+
+    // Searches every position to the depth and returns the total time in milliseconds. Each position gets a fresh
+    // player so nothing carries over from the previous one.
+    private static long run(Board[] positions, int depth, int threads) {
+        long time = 0;
+
+        for (Board position : positions) {
+            AlphaBetaPlayer player = new AlphaBetaPlayer(Pieces.WHITE);
+            player.setTimeLimit(Long.MAX_VALUE);
+            player.setDepthLimit(depth);
+            player.setThreads(threads);
+
+            long start = System.nanoTime();
+            player.chooseMove(new Board(position));
+            time += System.nanoTime() - start;
+        }
+
+        return time / 1000000;
+    }
+}
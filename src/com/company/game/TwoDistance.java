@@ -0,0 +1,511 @@
+package com.company.game;
+
+import com.company.utils.Pieces;
+import com.company.utils.Side;
+
+import java.util.Arrays;
+
+// Computes the two-distance heuristic for a Board. Every buffer is allocated once per Board size and reused, so an
+// evaluation doesn't allocate anything.
+//
+// A distance map holds one int per tile. Tiles are scanned away from the map's edge, and each EMPTY tile gets the
+// second smallest distance among the tiles reachable from it (through the connecting player's stones) plus one. Tiles
+// with fewer than two such neighbors are skipped and finished in a second pass once the rest of the map is known.
+//
+// The maps are kept between evaluations. The Board reports every tile it changes, and the next evaluation only
+// rescans each map from the first position in its scan order that the changes can affect. Everything scanned before
+// that position reads the same inputs as before, so the repaired maps are exactly what a full scan would produce.
+// Undoing a move cancels the change out and the previous result is reused as is.
+final class TwoDistance {
+
+    // Constants that represent tiles in a distance map.
+    private static final int EMPTY = 0;
+    private static final int PLAYER = Integer.MAX_VALUE;
+    private static final int OPPONENT = Integer.MIN_VALUE;
+
+    private static final int NO_SLOT = -1;
+
+    private final int dimensions;
+    private final HexGrid hexGrid;
+
+    // For each Side: the order its map is scanned in, each tile's position in that order (-1 for tiles on the edge)
+    // and which tiles start at a distance of 1.
+    private final int[][] scanOrder;
+    private final int[][] scanPosition;
+    private final boolean[][] onEdge;
+
+    // For each Side: edgeSlots[6 * tile + direction] numbers the off board neighbor of a tile if it lies along that
+    // Side's edge, and is NO_SLOT otherwise. Slots start after the tiles so they can share the located stamps.
+    private final int[][] edgeSlots;
+
+    // The distance maps, plus the tiles each map had to skip in its first pass.
+    private final int[][] distances;
+    private final int[][] skipped;
+    private final int[] numSkipped;
+
+    // Scratch space for finding a tile's neighbors. A tile has been visited or located during the current search if
+    // its entry equals stamp, which saves clearing the arrays between searches.
+    private final int[] stack;
+    private final int[] visited;
+    private final int[] located;
+    private int stamp;
+
+    // Results of the last search.
+    private int min;
+    private int secondMin;
+
+    // The player the maps were last filled for and the heuristic they gave. The maps are only usable while valid.
+    private boolean valid;
+    private Pieces evaluatedFor;
+    private double heuristic;
+
+    // Tiles changed since the maps were last brought up to date, along with what each tile held back then.
+    private final int[] changedTiles;
+    private final Pieces[] originalValues;
+    private final boolean[] changed;
+    private int numChanged;
+
+    TwoDistance(int dimensions) {
+        this.dimensions = dimensions;
+        hexGrid = HexGrid.of(dimensions);
+
+        int size = dimensions * dimensions;
+        int numSides = Side.values().length;
+
+        scanOrder = new int[numSides][];
+        scanPosition = new int[numSides][size];
+        onEdge = new boolean[numSides][size];
+        edgeSlots = new int[numSides][6 * size];
+        distances = new int[numSides][size];
+        skipped = new int[numSides][size];
+        numSkipped = new int[numSides];
+
+        for (Side side : Side.values()) {
+            fillScanOrder(side);
+            fillEdgeSlots(side);
+        }
+
+        stack = new int[size];
+        visited = new int[size];
+        located = new int[size + dimensions];
+        stamp = 0;
+
+        valid = false;
+        evaluatedFor = Pieces.EMPTY;
+        changedTiles = new int[size];
+        originalValues = new Pieces[size];
+        changed = new boolean[size];
+        numChanged = 0;
+    }
+
+    // Called by the Board just before a tile's value changes.
+    void tileChanged(int tile, Pieces oldValue) {
+        if (valid && !changed[tile]) {
+            changed[tile] = true;
+            originalValues[tile] = oldValue;
+            changedTiles[numChanged++] = tile;
+        }
+    }
+
+    // Calculates the heuristic using two-distance, repairing the maps from the last call where possible.
+    double calculateHeuristic(Board board, Pieces player) {
+        Pieces opponent = Pieces.changePlayer(player);
+
+        if (!valid || player != evaluatedFor) {
+            clearChanges();
+
+            // The WHITE maps treat the opponent's stones as connectors, the BLACK maps the player's.
+            fillMap(board, Side.LEFT, opponent);
+            fillMap(board, Side.RIGHT, opponent);
+            fillMap(board, Side.TOP, player);
+            fillMap(board, Side.BOTTOM, player);
+
+        } else {
+            dropUndoneChanges(board);
+
+            if (numChanged == 0) {
+                return heuristic;
+            }
+
+            repairMap(board, Side.LEFT, opponent);
+            repairMap(board, Side.RIGHT, opponent);
+            repairMap(board, Side.TOP, player);
+            repairMap(board, Side.BOTTOM, player);
+            clearChanges();
+        }
+
+        valid = true;
+        evaluatedFor = player;
+        heuristic = computeHeuristic(player);
+        return heuristic;
+    }
+
+    // Combines the four maps into the heuristic.
+    private double computeHeuristic(Pieces player) {
+        int twoDistanceWhite = getMinVal(distances[Side.LEFT.ordinal()], distances[Side.RIGHT.ordinal()]);
+        int twoDistanceBlack = getMinVal(distances[Side.TOP.ordinal()], distances[Side.BOTTOM.ordinal()]);
+
+        return player.equals(Pieces.BLACK) ? (double) twoDistanceWhite / twoDistanceBlack :
+                                             (double) twoDistanceBlack / twoDistanceWhite;
+    }
+
+    // Fills in one distance map from scratch.
+    private void fillMap(Board board, Side side, Pieces connector) {
+        int[] map = distances[side.ordinal()];
+        boolean[] edge = onEdge[side.ordinal()];
+
+        for (int tile = 0; tile < map.length; tile++) {
+            Pieces val = board.getTile(tile);
+
+            if (val == Pieces.EMPTY) {
+                map[tile] = edge[tile] ? 1 : EMPTY;
+
+            } else {
+                map[tile] = (val == connector) ? PLAYER : OPPONENT;
+            }
+        }
+
+        numSkipped[side.ordinal()] = 0;
+        scan(side, 0);
+    }
+
+    // Brings a map up to date with the changed tiles by rescanning it from the earliest position they can affect.
+    private void repairMap(Board board, Side side, Pieces connector) {
+        int s = side.ordinal();
+        int[] map = distances[s];
+        int[] order = scanOrder[s];
+        int[] position = scanPosition[s];
+        int from = order.length;
+
+        for (int i = 0; i < numChanged; i++) {
+            int tile = changedTiles[i];
+
+            // Edge tiles are read by everything, so start over.
+            if (onEdge[s][tile]) {
+                fillMap(board, side, connector);
+                return;
+            }
+
+            from = Math.min(from, position[tile]);
+
+            // Gaining or losing a connecting stone changes what every tile next to its group can reach.
+            if (originalValues[tile] == connector || board.getTile(tile) == connector) {
+                from = Math.min(from, firstAffectedPosition(board, s, tile, connector));
+            }
+        }
+
+        // Tiles skipped before the restart point go back to waiting for the second pass. Everything after it is
+        // rescanned from its stone or EMPTY value.
+        int keep = 0;
+        while (keep < numSkipped[s] && position[skipped[s][keep]] < from) {
+            map[skipped[s][keep]] = EMPTY;
+            keep++;
+        }
+
+        for (int i = keep; i < numSkipped[s]; i++) {
+            map[skipped[s][i]] = EMPTY;
+        }
+
+        numSkipped[s] = keep;
+
+        for (int i = from; i < order.length; i++) {
+            int tile = order[i];
+            Pieces val = board.getTile(tile);
+
+            if (val == Pieces.EMPTY) {
+                map[tile] = EMPTY;
+
+            } else {
+                map[tile] = (val == connector) ? PLAYER : OPPONENT;
+            }
+        }
+
+        scan(side, from);
+    }
+
+    // Finds the earliest scan position next to the group of connecting stones through a changed tile. Both the old
+    // and new group are covered by walking through other changed tiles as well as current connecting stones.
+    private int firstAffectedPosition(Board board, int side, int tile, Pieces connector) {
+        int[] position = scanPosition[side];
+        int first = position[tile];
+
+        nextStamp();
+        int top = 0;
+        stack[top++] = tile;
+        visited[tile] = stamp;
+
+        while (top > 0) {
+            int cur = stack[--top];
+
+            for (int dir = 0; dir < 6; dir++) {
+                int neighbor = hexGrid.neighbor(cur, dir);
+
+                if (neighbor == HexGrid.OFF_BOARD || visited[neighbor] == stamp) {
+                    continue;
+                }
+
+                visited[neighbor] = stamp;
+
+                if (changed[neighbor] || board.getTile(neighbor) == connector) {
+                    stack[top++] = neighbor;
+                }
+
+                if (position[neighbor] >= 0) {
+                    first = Math.min(first, position[neighbor]);
+                }
+            }
+        }
+
+        return first;
+    }
+
+    // Forgets changes that have since been undone, e.g. a move that was made and taken back.
+    private void dropUndoneChanges(Board board) {
+        int kept = 0;
+
+        for (int i = 0; i < numChanged; i++) {
+            int tile = changedTiles[i];
+
+            if (board.getTile(tile) == originalValues[tile]) {
+                changed[tile] = false;
+
+            } else {
+                changedTiles[kept++] = tile;
+            }
+        }
+
+        numChanged = kept;
+    }
+
+    // Marks the maps as up to date with the Board.
+    private void clearChanges() {
+        for (int i = 0; i < numChanged; i++) {
+            changed[changedTiles[i]] = false;
+        }
+
+        numChanged = 0;
+    }
+
+    // Runs the first pass over a map from the given position in its scan order, then finishes the skipped tiles.
+    private void scan(Side side, int from) {
+        int s = side.ordinal();
+        int[] map = distances[s];
+        int[] order = scanOrder[s];
+        int[] skippedTiles = skipped[s];
+
+        for (int i = from; i < order.length; i++) {
+            int tile = order[i];
+
+            if (map[tile] == EMPTY && !setSecondMin(s, tile, false)) {
+                skippedTiles[numSkipped[s]++] = tile;
+            }
+        }
+
+        for (int i = 0; i < numSkipped[s]; i++) {
+            setSecondMin(s, skippedTiles[i], true);
+        }
+    }
+
+    // If there are two neighboring distances, set the tile to the second lowest distance + 1.
+    // Else, if skipped is true, then set the tile to the lowest distance + 1 or EMPTY if there is no neighboring
+    // distance.
+    // Returns true if a second lowest neighbor was found.
+    private boolean setSecondMin(int side, int tile, boolean skipped) {
+        findNeighborDistances(side, tile);
+        int[] map = distances[side];
+
+        if (secondMin != Integer.MAX_VALUE) {
+            map[tile] = secondMin + 1;
+            return true;
+        }
+
+        if (skipped) {
+            map[tile] = (min != Integer.MAX_VALUE) ? min + 1 : EMPTY;
+        }
+
+        return false;
+    }
+
+    // Finds the two lowest distances next to a tile or next to the stones connected to it. Off board tiles along the
+    // map's edge count as a distance of 0, and each one counts separately.
+    private void findNeighborDistances(int side, int tile) {
+        int[] map = distances[side];
+        int[] slots = edgeSlots[side];
+
+        nextStamp();
+        min = Integer.MAX_VALUE;
+        secondMin = Integer.MAX_VALUE;
+
+        int top = 0;
+        stack[top++] = tile;
+        visited[tile] = stamp;
+
+        while (top > 0) {
+            int cur = stack[--top];
+
+            for (int dir = 0; dir < 6; dir++) {
+                int neighbor = hexGrid.neighbor(cur, dir);
+
+                if (neighbor == HexGrid.OFF_BOARD) {
+                    int slot = slots[6 * cur + dir];
+
+                    if (slot != NO_SLOT && located[slot] != stamp) {
+                        located[slot] = stamp;
+                        addDistance(0);
+                    }
+
+                    continue;
+                }
+
+                int val = map[neighbor];
+
+                if (val == PLAYER) {
+                    if (visited[neighbor] != stamp) {
+                        visited[neighbor] = stamp;
+                        stack[top++] = neighbor;
+                    }
+
+                } else if (val != EMPTY && val != OPPONENT && located[neighbor] != stamp) {
+                    located[neighbor] = stamp;
+                    addDistance(val);
+                }
+            }
+        }
+    }
+
+    // Keeps track of the two lowest distances seen.
+    private void addDistance(int val) {
+        if (val < min) {
+            secondMin = min;
+            min = val;
+
+        } else if (val < secondMin) {
+            secondMin = val;
+        }
+    }
+
+    // Starts a new search, clearing the stamps in the rare case the counter runs out.
+    private void nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0);
+            Arrays.fill(located, 0);
+            stamp = 1;
+        }
+    }
+
+    // Finds the lowest sum of two distance maps over the tiles that have a distance in both.
+    private int getMinVal(int[] pieceOne, int[] pieceTwo) {
+        int min = Integer.MAX_VALUE;
+
+        for (int tile = 0; tile < pieceOne.length; tile++) {
+            if (hasDistance(pieceOne[tile]) && hasDistance(pieceTwo[tile])) {
+                min = Math.min(min, Math.abs(pieceOne[tile] + pieceTwo[tile]));
+            }
+        }
+
+        return min;
+    }
+
+    // Returns true if a map entry is an actual distance rather than a stone or an unfilled tile.
+    private static boolean hasDistance(int val) {
+        return val != EMPTY && val != PLAYER && val != OPPONENT;
+    }
+
+    // Scans start one line away from the map's edge and move toward the opposite edge, row by row for TOP and BOTTOM
+    // and column by column for LEFT and RIGHT. Tiles on the edge itself start at 1 and aren't scanned.
+    private void fillScanOrder(Side side) {
+        int s = side.ordinal();
+        int[] order = new int[dimensions * (dimensions - 1)];
+        int count = 0;
+
+        for (int line = 1; line < dimensions; line++) {
+            for (int along = 0; along < dimensions; along++) {
+                switch (side) {
+                    case LEFT:
+                        order[count++] = along * dimensions + line;
+                        break;
+                    case RIGHT:
+                        order[count++] = along * dimensions + (dimensions - 1 - line);
+                        break;
+                    case TOP:
+                        order[count++] = line * dimensions + along;
+                        break;
+                    case BOTTOM:
+                        order[count++] = (dimensions - 1 - line) * dimensions + along;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Wrong side entered");
+                }
+            }
+        }
+
+        Arrays.fill(scanPosition[s], -1);
+        for (int i = 0; i < order.length; i++) {
+            scanPosition[s][order[i]] = i;
+        }
+
+        for (int along = 0; along < dimensions; along++) {
+            switch (side) {
+                case LEFT:
+                    onEdge[s][along * dimensions] = true;
+                    break;
+                case RIGHT:
+                    onEdge[s][along * dimensions + dimensions - 1] = true;
+                    break;
+                case TOP:
+                    onEdge[s][along] = true;
+                    break;
+                case BOTTOM:
+                    onEdge[s][(dimensions - 1) * dimensions + along] = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Wrong side entered");
+            }
+        }
+
+        scanOrder[s] = order;
+    }
+
+    // Numbers the off board neighbors that lie along a Side's edge by their position along it.
+    private void fillEdgeSlots(Side side) {
+        int[] slots = edgeSlots[side.ordinal()];
+        int size = dimensions * dimensions;
+
+        for (int row = 0; row < dimensions; row++) {
+            for (int col = 0; col < dimensions; col++) {
+                for (int dir = 0; dir < 6; dir++) {
+                    int neighborRow = row + HexGrid.ROW_OFFSETS[dir];
+                    int neighborCol = col + HexGrid.COL_OFFSETS[dir];
+                    int slot = NO_SLOT;
+
+                    switch (side) {
+                        case LEFT:
+                            if (neighborCol < 0 && neighborRow >= 0 && neighborRow < dimensions) {
+                                slot = size + neighborRow;
+                            }
+                            break;
+                        case RIGHT:
+                            if (neighborCol >= dimensions && neighborRow >= 0 && neighborRow < dimensions) {
+                                slot = size + neighborRow;
+                            }
+                            break;
+                        case TOP:
+                            if (neighborRow < 0 && neighborCol >= 0 && neighborCol < dimensions) {
+                                slot = size + neighborCol;
+                            }
+                            break;
+                        case BOTTOM:
+                            if (neighborRow >= dimensions && neighborCol >= 0 && neighborCol < dimensions) {
+                                slot = size + neighborCol;
+                            }
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Wrong side entered");
+                    }
+
+                    slots[6 * (row * dimensions + col) + dir] = slot;
+                }
+            }
+        }
+    }
+}
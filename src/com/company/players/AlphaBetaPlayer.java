@@ -1,137 +1,554 @@
 package com.company.players;
 
 import com.company.game.Board;
+import com.company.search.EvaluationCache;
+import com.company.search.Evaluator;
+import com.company.search.MoveOrdering;
+import com.company.search.TranspositionTable;
+import com.company.search.TwoDistanceEvaluator;
 import com.company.utils.Pieces;
 
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-
-// A Minimax with Alpha Beta Pruning implementation.
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+// An Alpha Beta Pruning implementation, a principal variation search in negamax form, searched with iterative
+// deepening under a time budget.
+//
+// With more than one thread the search runs Lazy SMP style: helper threads run the same iterative deepening on
+// their own copies of the Board, starting at staggered depths, and share the transposition table with the main
+// search. They mostly fill the table with results the main search then gets for free. The main search's move is
+// the one played.
 public class AlphaBetaPlayer implements Player {
 
     // The alpha beta player color.
     private Pieces player;
 
-    // Search depth of alpha beta.
-    private final int SEARCH_DEPTH = 2;
+    // Time limit is set to 3 seconds right now, the same as the MCTS players.
+    private static final long TIME_LIMIT = 3000;
+
+    // How often, in nodes, the search checks whether it's out of time. Must be one less than a power of two.
+    private static final long BUDGET_CHECK_INTERVAL = 255;
+
+    // Score of a won position. Larger than any heuristic value.
+    private static final double WIN_SCORE = 1e12;
+
+    // Half width of the first aspiration window around the previous iteration's score. The window doubles every time
+    // the score falls outside it, and once it's wider than the maximum that side is left open.
+    private static final double ASPIRATION_WINDOW = 0.25;
+    private static final double MAX_ASPIRATION_WINDOW = 4;
+
+    // Default size of the evaluation cache.
+    private static final int CACHE_SIZE = 1 << 16;
+
+    // Default number of transposition table entries, about 5 MB.
+    private static final int TABLE_SIZE = 1 << 18;
+
+    // Static evaluation used at the leaves.
+    private Evaluator evaluator;
+
+    // Heuristic values of positions already evaluated. Kept between moves since the same positions come up again.
+    private EvaluationCache cache;
+
+    // Results of searched positions, used for cutoffs and to try the best move from an earlier search first. Shared
+    // by all search threads.
+    private TranspositionTable table = new TranspositionTable(TABLE_SIZE);
+
+    // Whether move ordering gives a bonus to tiles near the last moves.
+    private boolean proximityOrdering = true;
+
+    // Whether dead and captured tiles, and tiles outside the must-play region, are left out of the moves searched.
+    private boolean inferiorCellPruning = true;
+    private boolean mustPlayPruning = true;
+
+    // Budget for a single move. A depth limit of 0 means no limit.
+    private long timeLimit = TIME_LIMIT;
+    private long nodeLimit = 0;
+    private int depthLimit = 0;
+
+    // The main search followed by one per helper thread. Kept between moves along with their caches and history.
+    private int numThreads = 1;
+    private List<Search> searches = new ArrayList<>();
+    private ExecutorService helpers;
+
+    // State of the current move.
+    private long startTime;
+    private volatile boolean stopped;
 
     // Statistics
-//    private int evaluated = 0;
-//    private int size = 0;
-//    private int sizeHelper = 0;
+    private long nodes;
+    private int completedDepth;
 
     // Default constructor pretty much does nothing.
     public AlphaBetaPlayer() {
         player = Pieces.EMPTY;
+        evaluator = new TwoDistanceEvaluator();
+        cache = new EvaluationCache(CACHE_SIZE, EvaluationCache.ReplacementPolicy.TWO_WAY_LRU);
     }
 
-    // Initializes the AlphaBetaPlayer to a Piece color.
+    // Initializes the AlphaBetaPlayer to a Piece color. Positions are evaluated with two-distance.
     public AlphaBetaPlayer(Pieces player) {
+        this(player, new TwoDistanceEvaluator());
+    }
+
+    // Initializes the AlphaBetaPlayer to a Piece color with the given evaluator.
+    public AlphaBetaPlayer(Pieces player, Evaluator evaluator) {
+        this(player, evaluator, new EvaluationCache(CACHE_SIZE, EvaluationCache.ReplacementPolicy.TWO_WAY_LRU));
+    }
+
+    // Initializes the AlphaBetaPlayer to a Piece color with the given evaluator and evaluation cache.
+    public AlphaBetaPlayer(Pieces player, Evaluator evaluator, EvaluationCache cache) {
         this.player = player;
+        this.evaluator = evaluator;
+        this.cache = cache;
+    }
+
+    // Returns the evaluation cache so its statistics can be inspected.
+    public EvaluationCache getEvaluationCache() {
+        return cache;
+    }
+
+    // Sets how long a move may take in milliseconds.
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    // Sets how many nodes the main search may visit per move, or 0 for no limit. Useful for reproducible runs.
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    // Sets the deepest iteration to search, or 0 for no limit.
+    public void setDepthLimit(int depthLimit) {
+        this.depthLimit = depthLimit;
+    }
+
+    // Sets how many threads search each move. One is the plain single threaded search.
+    public void setThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Need at least one thread");
+        }
+
+        this.numThreads = numThreads;
+    }
+
+    // Replaces the transposition table, e.g. with one sized for a memory limit.
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+
+    // Returns the transposition table so its statistics can be inspected.
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    // Turns the move ordering bonus for tiles near the last moves on or off.
+    public void setProximityOrdering(boolean proximityOrdering) {
+        this.proximityOrdering = proximityOrdering;
+
+        for (Search search : searches) {
+            search.ordering.setProximity(proximityOrdering);
+        }
+    }
+
+    // Turns leaving dead and captured tiles out of the search on or off.
+    public void setInferiorCellPruning(boolean inferiorCellPruning) {
+        this.inferiorCellPruning = inferiorCellPruning;
+
+        for (Search search : searches) {
+            search.ordering.setInferiorCellPruning(inferiorCellPruning);
+        }
+    }
+
+    // Turns restricting the search to the must-play region on or off.
+    public void setMustPlayPruning(boolean mustPlayPruning) {
+        this.mustPlayPruning = mustPlayPruning;
+
+        for (Search search : searches) {
+            search.ordering.setMustPlayPruning(mustPlayPruning);
+        }
+    }
+
+    // Returns the depth of the last fully completed iteration of the previous move.
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    // Returns how many nodes the previous move searched, over all threads.
+    public long getNodes() {
+        return nodes;
     }
 
     // Chooses a move to make and makes it.
     @Override
     public void makeMove(Board board) {
-//        evaluated = 0;
-//        size = 0;
+        Point move = chooseMove(board);
 
-        MoveNode move = alphaBeta(board, new MoveNode(), SEARCH_DEPTH, Double.MIN_VALUE, Double.MAX_VALUE, true);
-
-//        System.out.println("Nodes evaluated: " + evaluated);
-//        System.out.println("Max size of tree: " + size);
         System.out.println("MOVE FOUND: " + move);
 
-        board.setValue(move.move.x, move.move.y, player);
+        board.setValue(move.x, move.y, player);
     }
 
-    // The Alpha Beta Pruning algorithm.
-    private MoveNode alphaBeta(Board board, MoveNode preMove, int depth, double a, double b, boolean maximizingPlayer) {
-//        evaluated++;
-//        size++;
+    // Searches one ply deeper each iteration until the time or node budget runs out, and returns the best move of the
+    // deepest iteration the main search finished. The Board is left as it was.
+    public Point chooseMove(Board board) {
+        startTime = System.currentTimeMillis();
+        stopped = false;
+        table.newSearch();
+        prepareSearches();
+
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 1; i < numThreads; i++) {
+            final Search helper = searches.get(i);
+            final Board helperBoard = new Board(board);
+
+            running.add(helpers.submit(new Runnable() {
+                @Override
+                public void run() {
+                    helper.iterate(helperBoard);
+                }
+            }));
+        }
+
+        Point move = searches.get(0).iterate(board);
+        stopped = true;
+
+        for (Future<?> helper : running) {
+            try {
+                helper.get();
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+            } catch (ExecutionException e) {
+                throw new RuntimeException("ERROR: Helper search failed", e.getCause());
+            }
+        }
+
+        nodes = 0;
+        for (int i = 0; i < numThreads; i++) {
+            nodes += searches.get(i).nodes;
+        }
 
-        // Since heuristic calculations are expensive, only calculate them when needed, so at leaves.
-        if (depth == 0) {
-//            sizeHelper++;
+        completedDepth = searches.get(0).completedDepth;
+        return move;
+    }
 
-            preMove.heuristic = board.calculateHeuristic(player);
-            return new MoveNode(preMove);
+    // Makes sure there's a Search for every thread and a pool to run the helpers on.
+    private void prepareSearches() {
+        while (searches.size() < numThreads) {
+            int id = searches.size();
+            Search search = (id == 0) ? new Search(id, evaluator, cache) :
+                    new Search(id, evaluator.copy(),
+                               new EvaluationCache(cache.capacity(), EvaluationCache.ReplacementPolicy.TWO_WAY_LRU));
+            searches.add(search);
         }
 
-        // Maximizing player wants to maximize the heuristic value.
-        if (maximizingPlayer) {
-            MoveNode max = new MoveNode(Integer.MIN_VALUE);
+        if (numThreads > 1 && helpers == null) {
+            helpers = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "alpha-beta-helper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
 
-            for (Point move : possibleMoves(board)) {
+    // One thread's search: its own move ordering, evaluator and evaluation cache, plus the state of the move being
+    // searched.
+    private class Search {
 
-                board.setValue(move.x, move.y, player);
-                preMove.move = move;
+        // 0 for the main search, helpers count up from 1.
+        private final int id;
 
-                MoveNode bestChild = alphaBeta(board, preMove, depth - 1, a, b, false);
-                board.clearValue(move.x, move.y);
+        private final Evaluator evaluator;
+        private final EvaluationCache cache;
 
-                max = (max.heuristic >= bestChild.heuristic) ? max : bestChild;
-                a = Math.max(a, max.heuristic);
+        // Killer moves, history scores and the proximity bonus for ordering moves inside the tree.
+        private final MoveOrdering ordering;
 
-                // Max cutoff.
-                if (a >= b) {
-//                    size -= sizeHelper;
-//                    sizeHelper = 0;
+        // Where probes of the shared table land.
+        private final TranspositionTable.Entry entry = new TranspositionTable.Entry();
 
+        // The tiles played on the way to the current node, by ply.
+        private int[] path;
+
+        private boolean aborted;
+        private long nodes;
+        private int completedDepth;
+
+        Search(int id, Evaluator evaluator, EvaluationCache cache) {
+            this.id = id;
+            this.evaluator = evaluator;
+            this.cache = cache;
+            ordering = new MoveOrdering(proximityOrdering);
+            ordering.setInferiorCellPruning(inferiorCellPruning);
+            ordering.setMustPlayPruning(mustPlayPruning);
+        }
+
+        // Runs iterative deepening on the Board until stopped and returns the best move of the deepest finished
+        // iteration. Helpers start one ply deeper every other thread so the threads aren't all in step.
+        Point iterate(Board board) {
+            nodes = 0;
+            aborted = false;
+            completedDepth = 0;
+            ordering.newSearch(board);
+            path = new int[board.getDimensions() * board.getDimensions() + 1];
+
+            int dimensions = board.getDimensions();
+            int numMoves = ordering.orderMoves(board, player, 0, TranspositionTable.NO_MOVE,
+                                               TranspositionTable.NO_MOVE, TranspositionTable.NO_MOVE);
+            int[] moves = ordering.getMoves(0);
+
+            List<MoveNode> rootMoves = new ArrayList<>();
+            for (int i = 0; i < numMoves; i++) {
+                rootMoves.add(new MoveNode(new Point(moves[i] / dimensions, moves[i] % dimensions)));
+            }
+
+            // Helpers also start on different root moves.
+            Collections.rotate(rootMoves, -id);
+
+            MoveNode best = null;
+
+            for (int depth = 1 + (id % 2); depth <= rootMoves.size(); depth++) {
+                MoveNode result = (best == null) ? searchRoot(board, rootMoves, depth, Double.NEGATIVE_INFINITY,
+                                                              Double.POSITIVE_INFINITY) :
+                                                   aspirationSearch(board, rootMoves, depth, best.heuristic);
+
+                // An unfinished iteration only looked at some of the moves, so it's thrown away.
+                if (aborted) {
                     break;
                 }
+
+                best = result;
+                completedDepth = depth;
+
+                if (best.heuristic >= WIN_SCORE || depth == depthLimit || outOfBudget()) {
+                    break;
+                }
+
+                // The next iteration looks at the moves that did best in this one first.
+                Collections.sort(rootMoves, new Comparator<MoveNode>() {
+                    @Override
+                    public int compare(MoveNode first, MoveNode second) {
+                        return Double.compare(second.heuristic, first.heuristic);
+                    }
+                });
             }
 
-//            size -= sizeHelper;
-//            sizeHelper = 0;
+            return (best == null) ? rootMoves.get(0).move : best.move;
+        }
 
-            return max;
+        // Searches the root with a narrow window around the previous iteration's score, which cuts off more of the
+        // tree. If the score falls outside the window the window is widened on that side and the root searched again.
+        private MoveNode aspirationSearch(Board board, List<MoveNode> rootMoves, int depth, double previous) {
+            if (Math.abs(previous) >= WIN_SCORE) {
+                return searchRoot(board, rootMoves, depth, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+            }
 
-        // Minimizing player wants to minimize the heuristic value.
-        } else {
-            MoveNode min = new MoveNode(Integer.MAX_VALUE);
+            double delta = ASPIRATION_WINDOW;
+            double a = previous - delta;
+            double b = previous + delta;
 
-            for (Point move : possibleMoves(board)) {
+            while (true) {
+                MoveNode result = searchRoot(board, rootMoves, depth, a, b);
 
-                board.setValue(move.x, move.y, Pieces.changePlayer(player));
-                preMove.move = move;
+                if (aborted) {
+                    return null;
+                }
 
-                MoveNode bestChild = alphaBeta(board, preMove, depth - 1, a, b, true);
-                board.clearValue(move.x, move.y);
+                if (result.heuristic <= a) {
+                    delta *= 2;
+                    a = (delta > MAX_ASPIRATION_WINDOW) ? Double.NEGATIVE_INFINITY : result.heuristic - delta;
 
-                min = (min.heuristic <= bestChild.heuristic) ? min : bestChild;
-                b = Math.min(b, min.heuristic);
+                } else if (result.heuristic >= b) {
+                    delta *= 2;
+                    b = (delta > MAX_ASPIRATION_WINDOW) ? Double.POSITIVE_INFINITY : result.heuristic + delta;
 
-                // Min cutoff.
-                if (b <= a) {
-//                    size -= sizeHelper;
-//                    sizeHelper = 0;
+                } else {
+                    return result;
+                }
+            }
+        }
+
+        // Searches every root move to the given depth within the window and returns the best one. Each root move's
+        // heuristic is set to its score, which is only an upper bound for moves that didn't beat the best move found
+        // before them. A best score outside the window is only a bound too.
+        private MoveNode searchRoot(Board board, List<MoveNode> rootMoves, int depth, double a, double b) {
+            Pieces opponent = Pieces.changePlayer(player);
+            MoveNode best = null;
+
+            for (MoveNode root : rootMoves) {
+                board.setValue(root.move.x, root.move.y, player);
+                path[0] = root.move.x * board.getDimensions() + root.move.y;
+                double score = (best == null) ? -negamax(board, depth - 1, 1, -b, -a, opponent) :
+                                                scout(board, depth - 1, 1, a, b, opponent);
+                board.clearValue(root.move.x, root.move.y);
+
+                if (aborted) {
+                    return null;
+                }
+
+                root.heuristic = score;
+                if (best == null || score > best.heuristic) {
+                    best = root;
+                }
+
+                a = Math.max(a, score);
 
+                if (a >= b) {
                     break;
                 }
             }
-//            size -= sizeHelper;
-//            sizeHelper = 0;
 
-            return min;
+            return new MoveNode(best);
         }
-    }
 
-    // Gets a list containing all possible moves.
-    private List<Point> possibleMoves(Board board) {
-        List<Point> ret = new ArrayList<>();
+        // Principal variation search in negamax form. Returns the value of the position for the player to move,
+        // which is at least b or at most a when the value is outside the window. The ply is the number of moves made
+        // since the root.
+        private double negamax(Board board, int depth, int ply, double a, double b, Pieces toMove) {
+            nodes++;
+
+            if ((nodes & BUDGET_CHECK_INTERVAL) == 0 && outOfBudget()) {
+                aborted = true;
+            }
+
+            if (aborted) {
+                return 0;
+            }
+
+            // Prefer wins that come sooner and losses that come later.
+            Pieces winner = board.winner();
+            if (!winner.equals(Pieces.EMPTY)) {
+                return winner.equals(toMove) ? WIN_SCORE + depth : -WIN_SCORE - depth;
+            }
+
+            // Since heuristic calculations are expensive, only calculate them when needed, so at leaves.
+            if (depth == 0) {
+                double heuristic = evaluate(board);
+                return toMove.equals(player) ? heuristic : -heuristic;
+            }
 
-        for (int row = 0; row < board.getDimensions(); row++) {
-            for (int col = 0; col < board.getDimensions(); col++) {
+            // A result from a search at least this deep either settles the position or narrows the window.
+            long key = board.zobristKey();
+            int tableMove = TranspositionTable.NO_MOVE;
+
+            if (table.probe(key, entry)) {
+                tableMove = entry.getMove();
+
+                if (entry.getDepth() >= depth) {
+                    double stored = entry.getScore();
+
+                    switch (entry.getBound()) {
+                        case TranspositionTable.EXACT:
+                            return stored;
+                        case TranspositionTable.LOWER_BOUND:
+                            a = Math.max(a, stored);
+                            break;
+                        case TranspositionTable.UPPER_BOUND:
+                            b = Math.min(b, stored);
+                            break;
+                        default:
+                            break;
+                    }
+
+                    if (a >= b) {
+                        return stored;
+                    }
+                }
+            }
 
-                if (board.getValue(row, col).equals(Pieces.EMPTY)) {
-                    ret.add(new Point(row, col));
+            double originalA = a;
+            double best = Double.NEGATIVE_INFINITY;
+            int bestMove = TranspositionTable.NO_MOVE;
+            int dimensions = board.getDimensions();
+            Pieces opponent = Pieces.changePlayer(toMove);
+
+            int numMoves = ordering.orderMoves(board, toMove, ply, tableMove, path[ply - 1],
+                                               (ply >= 2) ? path[ply - 2] : TranspositionTable.NO_MOVE);
+            int[] moves = ordering.getMoves(ply);
+
+            // The first move is searched with the full window, the rest only have to be shown to be no better.
+            for (int i = 0; i < numMoves; i++) {
+                int move = moves[i];
+
+                board.setValue(move / dimensions, move % dimensions, toMove);
+                path[ply] = move;
+                double score = (i == 0) ? -negamax(board, depth - 1, ply + 1, -b, -a, opponent) :
+                                          scout(board, depth - 1, ply + 1, a, b, opponent);
+                board.clearValue(move / dimensions, move % dimensions);
+
+                if (score > best) {
+                    best = score;
+                    bestMove = move;
+                }
+
+                a = Math.max(a, best);
+
+                if (a >= b || aborted) {
+                    break;
                 }
             }
+
+            if (!aborted) {
+                int bound = (best <= originalA) ? TranspositionTable.UPPER_BOUND :
+                            (best >= b) ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+
+                if (best >= b && bestMove != TranspositionTable.NO_MOVE) {
+                    ordering.recordCutoff(ply, bestMove, depth);
+                }
+
+                table.store(key, depth, bound, best, bestMove);
+            }
+
+            return best;
         }
 
-        return ret;
+        // Searches a move after the first with a null window just above a, which only shows whether it's better than
+        // a. Only if it is does it get searched again with the real window. The Board already has the move made and
+        // the value returned is for the player who made it.
+        private double scout(Board board, int depth, int ply, double a, double b, Pieces toMove) {
+            double score = -negamax(board, depth, ply, -Math.nextUp(a), -a, toMove);
+
+            if (score > a && score < b && !aborted) {
+                score = -negamax(board, depth, ply, -b, -a, toMove);
+            }
+
+            return score;
+        }
+
+        // Returns true once the move has used up its budget. Helpers run until the main search is done.
+        private boolean outOfBudget() {
+            if (stopped) {
+                return true;
+            }
+
+            return id == 0 && (System.currentTimeMillis() - startTime >= timeLimit ||
+                               (nodeLimit > 0 && nodes >= nodeLimit));
+        }
+
+        // Looks the heuristic up in the cache before falling back to calculating it.
+        private double evaluate(Board board) {
+            long key = EvaluationCache.key(board.zobristKey(), player);
+
+            if (cache.probe(key)) {
+                return cache.value();
+            }
+
+            double heuristic = evaluator.evaluate(board, player);
+            cache.store(key, heuristic);
+            return heuristic;
+        }
     }
 
     // Class representing a move. Used to store a point representing where to move and a heuristic that corresponds to
@@ -141,16 +558,6 @@ public class AlphaBetaPlayer implements Player {
         Point move;
         double heuristic;
 
-        public MoveNode() {
-            move = null;
-            heuristic = 0;
-        }
-
-        public MoveNode(int heuristic) {
-            move = null;
-            this.heuristic = heuristic;
-        }
-
         public MoveNode(MoveNode moveNode) {
             this.move = new Point(moveNode.move);
             this.heuristic = moveNode.heuristic;
@@ -1,28 +1,86 @@
 package com.company.players;
 
 import com.company.game.Board;
+import com.company.game.HexGrid;
+import com.company.search.MoveFilter;
+import com.company.search.NodePool;
+import com.company.search.PlayoutEngine;
 import com.company.utils.Pieces;
-import com.company.utils.utils;
 
 import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 // Represents a MCTS player enhanced by AMAF heuristic and an opening book.
+//
+// AMAF values are used as in RAVE: a node's value is its win rate blended with its AMAF win rate, with the weight of
+// the AMAF win rate going from 1 towards 0 as the node gets played more.
+//
+// Tree parallel: every thread descends the same tree. Statistics are atomic and updated without locks. A thread
+// going down a branch counts a play there right away, a virtual loss that only turns into a win if the simulation is
+// won, so other threads spread out over other branches meanwhile.
+//
+// The tree lives in a NodePool. The first thread to reach a node allocates the block of its children, and each child
+// is then expanded by the thread that claims its slot in the block.
+//
+// The tree is kept between moves. On the next move, the subtree for the move played and the opponent's reply is
+// copied to a spare pool and searched on from there, so its statistics aren't thrown away.
+//
+// When pondering, the tree keeps growing under the move played while the opponent thinks, on background threads that
+// are stopped once the next move is asked for or the game is over.
 public class EnhancedMonteCarloPlayer implements Player{
 
     // Time limit is set to 3 seconds right now.
-    private final long TIME_LIMIT = 3000;
+    private static final long TIME_LIMIT = 3000;
 
     // Exploration constant was optimized by the literature.
     private final double EXPLORATION_CONSTANT = 1 / Math.sqrt(2);
 
-//    private int numSimulations = 0;
-//    private int size = 0;
+    // Number of plays at which a node's own win rate and its AMAF win rate are weighted equally. AMAF is only trusted
+    // while a node has few plays of its own.
+    private static final double RAVE_EQUIVALENCE = 1000;
+
+    // Default number of tree nodes, about 32 MB.
+    private static final int POOL_CAPACITY = 1 << 20;
 
     // Color MCTS plays as.
     private Pieces player;
 
+    // How many threads search the tree.
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService helpers;
+
+    // The tree every thread shares, kept between moves so it is only allocated once.
+    private int poolCapacity = POOL_CAPACITY;
+    private NodePool tree;
+
+    // Whether the tree is kept for the next move, and the pool the kept subtree is copied into.
+    private boolean treeReuse = true;
+    private NodePool spare;
+
+    private long timeLimit = TIME_LIMIT;
+
+    // Whether to search on the opponent's time, the background searches doing it and the flag that stops them.
+    private boolean pondering = false;
+    private final List<Future<?>> ponderers = new ArrayList<>();
+    private volatile boolean stopped;
+
+    // What is needed to find the kept subtree: the tree's root, the key of the position it was grown from and the move
+    // that was played from it.
+    private int root = NodePool.NONE;
+    private long lastKey;
+    private HexGrid lastGrid;
+    private int lastMove = NodePool.NONE;
+
+    // Statistics
+    private long simulations;
+    private long reusedSimulations;
+
     // Default constructor pretty much does nothing.
     public EnhancedMonteCarloPlayer() {
         player = Pieces.EMPTY;
@@ -33,22 +91,89 @@ public class EnhancedMonteCarloPlayer implements Player{
         this.player = player;
     }
 
+    // Sets how many threads search each move. One is the plain single threaded search.
+    public void setThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Need at least one thread");
+        }
+
+        this.numThreads = numThreads;
+    }
+
+    // Sets how many nodes the tree can hold. Once the tree is full it stops growing, and simulations run from the tree
+    // it has.
+    public void setPoolCapacity(int poolCapacity) {
+        stopPondering();
+        this.poolCapacity = poolCapacity;
+        tree = null;
+        spare = null;
+        lastMove = NodePool.NONE;
+    }
+
+    // Turns keeping the tree between moves on or off.
+    public void setTreeReuse(boolean treeReuse) {
+        this.treeReuse = treeReuse;
+    }
+
+    // Sets how long a move may take in milliseconds.
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    // Returns how many random simulations the previous move ran, over all threads.
+    public long getSimulations() {
+        return simulations;
+    }
+
+    // Turns searching on the opponent's time on or off. It only helps when the tree is kept between moves, and an
+    // opponent searching on the same machine loses the threads to it.
+    public void setPondering(boolean pondering) {
+        this.pondering = pondering;
+
+        if (!pondering) {
+            stopPondering();
+        }
+    }
+
+    // Returns how many simulations the previous move started with from the kept subtree.
+    public long getReusedSimulations() {
+        return reusedSimulations;
+    }
+
     // Makes a move using MCTS algorithm. The opening book is used instead if its the first move.
     @Override
     public void makeMove(Board board) {
-//        numSimulations = 0;
-//        size = 0;
+        stopPondering();
 
         List<Point> opponentMoves = new LinkedList<>();
         int count = countMoves(board, opponentMoves);
 
-        MoveNode move = (count == 0) ? openingBook(player, count, opponentMoves) : MonteCarloSearch(board, player);
+        Point move;
+        if (count == 0) {
+
+            // There's no tree to keep after a book move.
+            lastMove = NodePool.NONE;
+            move = openingBook(player, count, opponentMoves);
+
+        } else {
+            move = MonteCarloSearch(board, player);
+        }
 
-//        System.out.println("Number of simulations: " + numSimulations);
-//        System.out.println("Max size of tree: " + size);
+//        System.out.println("Number of simulations: " + simulations);
+//        System.out.println("Size of tree: " + tree.size());
         System.out.println("MOVE FOUND: " + move);
 
-        board.setValue(move.move.x, move.move.y, player);
+        board.setValue(move.x, move.y, player);
+
+        if (pondering && treeReuse && lastMove != NodePool.NONE && board.winner().equals(Pieces.EMPTY)) {
+            startPondering(board);
+        }
+    }
+
+    // Stops searching on the opponent's time.
+    @Override
+    public void gameOver() {
+        stopPondering();
     }
 
     // Counts how many moves have occured thus far.
@@ -70,37 +195,37 @@ public class EnhancedMonteCarloPlayer implements Player{
     }
 
     // Produces a predetermined move based on the board state.
-    private MoveNode openingBook(Pieces player, int count, List<Point> opponentMoves) {
+    private Point openingBook(Pieces player, int count, List<Point> opponentMoves) {
         switch (count) {
             case 0:
                 if (player.equals(Pieces.WHITE)) {
-                    return new MoveNode(new Point(3, 3));
+                    return new Point(3, 3);
 
                 } else {
                     Point opponentMove = new Point(opponentMoves.get(0));
                     if (opponentMove.x == 3 && opponentMove.y == 3) {
-                        return new MoveNode(new Point(3, 4));
+                        return new Point(3, 4);
 
                     } else if (opponentMove.x == 3 && opponentMove.y == 4) {
-                        return new MoveNode(new Point(3, 3));
+                        return new Point(3, 3);
 
                     } else if (opponentMove.x == 4 && opponentMove.y == 3) {
-                        return new MoveNode(new Point(4, 4));
+                        return new Point(4, 4);
 
                     } else if (opponentMove.x == 4 && opponentMove.y == 4) {
-                        return new MoveNode(new Point(4, 3));
+                        return new Point(4, 3);
 
                     } else if (opponentMove.x <= 3 && opponentMove.y <= 3) {
-                        return new MoveNode(new Point(3, 3));
+                        return new Point(3, 3);
 
                     } else if (opponentMove.x <= 3 && opponentMove.y >= 4) {
-                        return new MoveNode(new Point(3, 4));
+                        return new Point(3, 4);
 
                     } else if (opponentMove.y <= 3) {
-                        return new MoveNode(new Point(4, 3));
+                        return new Point(4, 3);
 
                     } else {
-                        return new MoveNode(new Point(4, 4));
+                        return new Point(4, 4);
                     }
                 }
             default:
@@ -109,306 +234,389 @@ public class EnhancedMonteCarloPlayer implements Player{
     }
 
     // MCTS algorithm. Uses UCT, then random simulation, then backup while time allows. Finally uses max child to select
-    // a move.
-    private MoveNode MonteCarloSearch(Board board, Pieces curPlayer) {
-        MoveNode root = new MoveNode(board);
-        long startTime = System.currentTimeMillis();
-
-        while (System.currentTimeMillis() - startTime < TIME_LIMIT) {
-            tuple terminalNode = treePolicy(new Board(board), root, curPlayer);
-            DefaultNode defaultNode = defaultPolicy(terminalNode.player, terminalNode.board);
-            backup(defaultNode.player, defaultNode.whitePlaySet, defaultNode.blackPlaySet, terminalNode.player, terminalNode.terminalMove);
+    // a move. Every thread works on the same tree.
+    private Point MonteCarloSearch(Board board, Pieces curPlayer) {
+        long deadline = System.currentTimeMillis() + timeLimit;
+        stopped = false;
+        prepareHelpers();
+
+        if (tree == null) {
+            tree = new NodePool(poolCapacity);
         }
 
-        return selectMax(root);
-    }
+        root = prepareTree(board, curPlayer);
 
-    // Chooses the best child according to UCB1 until a node with unexpanded children is encountered. A child is then
-    // expanded. This policy takes AMAF values into account.
-    private tuple treePolicy(Board curBoard, MoveNode root, Pieces curPlayer) {
+        List<Future<?>> running = new ArrayList<>();
+        List<Worker> workers = new ArrayList<>();
 
-        // If can expand, then expand
-        if (root.possibleChildren != root.children.size()) {
-            return expand(curBoard, root, curPlayer);
+        for (int i = 0; i < numThreads; i++) {
+            workers.add(new Worker(new Board(board), root, curPlayer, deadline));
         }
 
-        double max = Double.MIN_VALUE;
-        MoveNode bestChild = new MoveNode();
+        for (int i = 1; i < numThreads; i++) {
+            running.add(helpers.submit(workers.get(i)));
+        }
 
-        for (MoveNode child : root.children) {
+        workers.get(0).run();
 
-            double heuristic = calculateAMAF(root, child);
-            if (heuristic > max) {
-                max = heuristic;
-                bestChild = child;
+        for (Future<?> helper : running) {
+            try {
+                helper.get();
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+            } catch (ExecutionException e) {
+                throw new RuntimeException("ERROR: Helper search failed", e.getCause());
             }
         }
 
-        curBoard.setValue(bestChild.move.x, bestChild.move.y, curPlayer);
-        return treePolicy(curBoard, bestChild, Pieces.changePlayer(curPlayer));
-    }
+        simulations = 0;
+        for (Worker worker : workers) {
+            simulations += worker.simulations;
+        }
 
-    // Expands a MoveNode by adding an unexpanded MoveNode to the children of another MoveNode.
-    private tuple expand(Board curBoard, MoveNode root, Pieces curPlayer) {
-//        size++;
+        int move = selectMax(root);
+        if (move == NodePool.NONE) {
+            throw new IllegalStateException("ERROR: Node pool too small for the root's children");
+        }
 
-        for (int row = 0; row < curBoard.getDimensions(); row++) {
-            for (int col = 0; col < curBoard.getDimensions(); col++) {
+        lastKey = board.zobristKey();
+        lastGrid = board.getHexGrid();
+        lastMove = move;
 
-                if (curBoard.getValue(row, col).equals(Pieces.EMPTY) &&
-                        !root.children.contains(new MoveNode(new Point(row, col)))) {
+        return new Point(move / board.getDimensions(), move % board.getDimensions());
+    }
 
-                    curBoard.setValue(row, col, curPlayer);
+    // Returns the root the tree starts this move from. If the tree holds the position reached by the move played last
+    // time and the opponent's reply, it is copied from that grandchild on into the spare pool, which takes its place.
+    // Otherwise the tree starts over.
+    private int prepareTree(Board board, Pieces curPlayer) {
+        reusedSimulations = 0;
+        int node = treeReuse ? findReply(board, curPlayer) : NodePool.NONE;
 
-                    MoveNode expandedNode = new MoveNode(new Point(row, col), root, curBoard);
-                    root.children.add(expandedNode);
+        if (node == NodePool.NONE) {
+            tree.clear();
+            return tree.newRoot();
+        }
 
-                    return new tuple(curPlayer, curBoard, expandedNode);
-                }
-            }
+        if (spare == null) {
+            spare = new NodePool(poolCapacity);
         }
 
-        throw new RuntimeException("ERROR: No Empty spots on board");
-    }
+        int newRoot = spare.copySubtree(tree, node);
+        NodePool old = tree;
+        tree = spare;
+        spare = old;
 
-    // Calculates UCB1 taking AMAF values in account.
-    private double calculateAMAF(MoveNode root, MoveNode child) {
-        double exploitation = (double) (child.numWins + child.numAMAFWins) / (child.numPlays + child.numAMAFPlays);
-        double exploration = Math.sqrt(2.0 * Math.log(root.numPlays + root.numAMAFPlays) / (child.numPlays + child.numAMAFPlays));
-        return exploitation + 2.0 * EXPLORATION_CONSTANT * exploration;
+        reusedSimulations = tree.getPlays(newRoot);
+        return newRoot;
     }
 
-    // Conducts a random simulation of the remaining EMPTY tiles.
-    // Returns the winner of this random simulation (Hex always has a winner).
-    // So that AMAF values can be backed up, it also returns the moves that each player made during the simulation.
-    private DefaultNode defaultPolicy(Pieces player, Board curBoard) {
-//        numSimulations++;
+    // Returns the grandchild of the tree's root for the move played from it and the opponent's reply that together
+    // lead to the Board, or NONE if the tree doesn't have it.
+    private int findReply(Board board, Pieces curPlayer) {
+        if (lastMove == NodePool.NONE || board.getHexGrid() != lastGrid) {
+            return NodePool.NONE;
+        }
+
+        int child = tree.findChild(root, lastMove);
+        if (child == NodePool.NONE) {
+            return NodePool.NONE;
+        }
 
-        List<Point> emptyTiles = new LinkedList<>();
+        long key = lastKey ^ lastGrid.zobrist(lastMove, curPlayer);
+        Pieces opponent = Pieces.changePlayer(curPlayer);
 
-        for (int row = 0; row < curBoard.getDimensions(); row++) {
-            for (int col = 0; col < curBoard.getDimensions(); col++) {
+        int first = tree.getFirstChild(child);
+        for (int reply = first; reply < first + tree.getExpanded(child); reply++) {
 
-                if (curBoard.getValue(row, col).equals(Pieces.EMPTY)) {
-                    emptyTiles.add(new Point(row, col));
-                }
+            if ((key ^ lastGrid.zobrist(tree.getMove(reply), opponent)) == board.zobristKey()) {
+                return reply;
             }
         }
 
-        Collections.shuffle(emptyTiles);
-        Set<MoveNode> whitePlaySet = new HashSet<>();
-        Set<MoveNode> blackPlaySet = new HashSet<>();
+        return NodePool.NONE;
+    }
+
+    // Grows the tree under the move just played on background threads until stopPondering is called. The Board is the
+    // position after the move.
+    private void startPondering(Board board) {
+        int child = tree.findChild(root, lastMove);
+        if (child == NodePool.NONE) {
+            return;
+        }
+
+        stopped = false;
+        prepareHelpers();
+
+        for (int i = 0; i < numThreads; i++) {
+            ponderers.add(helpers.submit(new Worker(new Board(board), child, Pieces.changePlayer(player),
+                                                    Long.MAX_VALUE)));
+        }
+    }
+
+    // Stops the background searches and waits for them to finish, so the tree can be used again.
+    private void stopPondering() {
+        stopped = true;
 
-        for (Point tile : emptyTiles) {
-            player = Pieces.changePlayer(player);
-            curBoard.setValue(tile.x, tile.y, player);
+        for (Future<?> ponderer : ponderers) {
+            try {
+                ponderer.get();
 
-            if (player.equals(Pieces.WHITE)) {
-                whitePlaySet.add(new MoveNode(tile));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
 
-            } else {
-                blackPlaySet.add(new MoveNode(tile));
+            } catch (ExecutionException e) {
+                throw new RuntimeException("ERROR: Pondering failed", e.getCause());
             }
         }
 
-        return new DefaultNode(utils.terminateBlack(curBoard) ? Pieces.BLACK : Pieces.WHITE, whitePlaySet, blackPlaySet);
+        ponderers.clear();
     }
 
-    // Backs up the statistics. All node's numPlays are incremented and the winning player's numWins are incremented.
-    // Cutoff AMAF is incorporated too. AMAF is updated up until the first row in the MCTS tree.
-    private void backup(Pieces winningPlayer, Set<MoveNode> whitePlaySet, Set<MoveNode> blackPlaySet,
-                        Pieces curPlayer, MoveNode curMove) {
+    // Makes sure there's a pool to run the helpers on.
+    private void prepareHelpers() {
+        if ((numThreads > 1 || pondering) && helpers == null) {
+            helpers = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "enhanced-monte-carlo-helper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
 
-        curMove.numPlays++;
+    // One thread's share of the search, with its own move filter and random numbers.
+    private class Worker implements Runnable {
 
-        if (curMove.parent == null) {
-            return;
-        }
+        private final Board rootBoard;
+        private final int root;
+        private final Pieces rootPlayer;
+        private final long deadline;
 
-        if (curPlayer.equals(winningPlayer)) {
-            curMove.numWins++;
+        // Leaves dead and captured tiles, and tiles outside the must-play region, out of the tree.
+        private final MoveFilter moveFilter = new MoveFilter(true, true);
 
-            // If this is currently the winning player, then all its children are of the losing color. So update all
-            // losing plays for AMAF.
-            for (MoveNode child : curMove.children) {
-                if (winningPlayer.equals(Pieces.BLACK) && whitePlaySet.contains(child)) {
-                    child.numAMAFPlays++;
+        private final PlayoutEngine playouts = new PlayoutEngine();
 
-                } else if (blackPlaySet.contains(child)) {
-                    child.numAMAFPlays++;
-                }
-            }
-        } else {
+        // The Board each iteration plays on, reset to the root position every time.
+        private final Board curBoard;
 
-            // If this is currently the losing player, then all its children are of the winning color. So update all
-            // winning plays for AMAF.
-            for (MoveNode child : curMove.children) {
-                if (winningPlayer.equals(Pieces.BLACK) && blackPlaySet.contains(child)) {
-                    child.numAMAFPlays++;
-                    child.numAMAFWins++;
+        // The nodes from the root down to the one being simulated.
+        private final int[] path;
+        private int pathLength;
 
-                } else if (whitePlaySet.contains(child)) {
-                    child.numAMAFPlays++;
-                    child.numAMAFWins++;
-                }
+        // Buffer for the moves of a block of children.
+        private final int[] candidates;
+
+        private long simulations;
+
+        Worker(Board rootBoard, int root, Pieces rootPlayer, long deadline) {
+            this.rootBoard = rootBoard;
+            this.root = root;
+            this.rootPlayer = rootPlayer;
+            this.deadline = deadline;
+
+            int size = rootBoard.getDimensions() * rootBoard.getDimensions();
+            path = new int[size + 2];
+            candidates = new int[size];
+            curBoard = new Board(rootBoard);
+        }
+
+        // Searches until the time is up or the search is stopped.
+        @Override
+        public void run() {
+            while (!stopped && System.currentTimeMillis() < deadline) {
+                curBoard.copyFrom(rootBoard);
+                Pieces lastPlayer = treePolicy(curBoard);
+                Pieces winningPlayer = defaultPolicy(lastPlayer, curBoard);
+                backup(winningPlayer, lastPlayer);
             }
         }
 
-        backup(winningPlayer, whitePlaySet, blackPlaySet, Pieces.changePlayer(curPlayer), curMove.parent);
-    }
+        // Chooses the best child according to UCB1 until a node with unexpanded children is encountered. A child is
+        // then expanded. This policy takes AMAF values into account. The play is counted in every node on the way
+        // down, as a virtual loss until backup. Leaves the path on the Board and returns the player who made the last
+        // move on it.
+        private Pieces treePolicy(Board curBoard) {
+            int node = root;
+            Pieces curPlayer = rootPlayer;
+            pathLength = 0;
+            path[pathLength++] = node;
+            tree.addPlay(node);
+
+            while (true) {
+
+                // If can expand, then expand. The slot is claimed first so no two threads expand the same child.
+                if (tree.isUnexpanded(node) && !allocateChildren(curBoard, node, curPlayer)) {
+                    break;
+                }
 
-    // Selects the MoveNode with the best win/plays ration.
-    private MoveNode selectMax(MoveNode root) {
-        double max = Double.MIN_VALUE;
-        MoveNode bestChild = null;
+                int child = tree.claimChild(node);
+                if (child != NodePool.NONE) {
+                    play(curBoard, child, curPlayer);
+                    return curPlayer;
+                }
 
-        for (MoveNode child : root.children) {
+                // Either the game is over here or every child is still being expanded, so simulate from here.
+                child = bestChild(node);
+                if (child == NodePool.NONE) {
+                    break;
+                }
 
-            double reward = (double) (child.numWins + child.numAMAFWins) / (child.numPlays + child.numAMAFPlays);
-            if (reward > max) {
-                max = reward;
-                bestChild = child;
+                play(curBoard, child, curPlayer);
+                node = child;
+                curPlayer = Pieces.changePlayer(curPlayer);
             }
+
+            return Pieces.changePlayer(curPlayer);
         }
 
-        return bestChild;
-    }
+        // Allocates the block of children of a node, one per candidate move. Returns false if there are none, e.g.
+        // because the game is over, or the pool is full.
+        private boolean allocateChildren(Board curBoard, int node, Pieces curPlayer) {
+            if (tree.isFull() || !curBoard.winner().equals(Pieces.EMPTY)) {
+                return false;
+            }
 
-    // Represents a move. Contains MCTS and AMAF statistics like number of plays and wins in order to compute a reward
-    // value.
-    class MoveNode {
+            int count = moveFilter.analyze(curBoard, curPlayer);
+            int size = curBoard.getDimensions() * curBoard.getDimensions();
 
-        Point move;
-        int numPlays;
-        int numWins;
-        int numAMAFPlays;
-        int numAMAFWins;
-
-        // This MoveNode's parent in the MCTS tree.
-        MoveNode parent;
-
-        // All of this MoveNode's children (i.e. expanded nodes).
-        List<MoveNode> children;
-
-        // Allows a fast check to see if the node is fully expanded. This is calculated once every time a node is added
-        // whereas without this, this would have to be checked every new level.
-        int possibleChildren;
-
-        public MoveNode() {
-            move = null;
-            parent = null;
-            children = new LinkedList<>();
-            possibleChildren = 0;
-            numPlays = 0;
-            numWins = 0;
-            numAMAFPlays = 0;
-            numAMAFWins = 0;
-        }
+            int found = 0;
+            for (int tile = 0; tile < size && found < count; tile++) {
+                if (moveFilter.isCandidate(curBoard, tile)) {
+                    candidates[found++] = tile;
+                }
+            }
 
-        public MoveNode(Board board) {
-            move = null;
-            parent = null;
-            children = new LinkedList<>();
-            countPossibleChildren(board);
-            numPlays = 0;
-            numWins = 0;
-            numAMAFPlays = 0;
-            numAMAFWins = 0;
+            return found > 0 && tree.expand(node, candidates, found);
         }
 
-        public MoveNode(Point move) {
-            this.move = move;
-            parent = null;
-            children = new LinkedList<>();
-            possibleChildren = 0;
-            numPlays = 0;
-            numWins = 0;
-            numAMAFPlays = 0;
-            numAMAFWins = 0;
-        }
+        // Returns the expanded child with the best UCB1 value taking AMAF into account, or NONE if there are none.
+        private int bestChild(int node) {
+            double max = Double.NEGATIVE_INFINITY;
+            int bestChild = NodePool.NONE;
 
-        public MoveNode(Point move, MoveNode parent, Board board) {
-            this.move = new Point(move);
-            this.parent = parent;
-            children = new LinkedList<>();
-            countPossibleChildren(board);
-            numPlays = 0;
-            numWins = 0;
-            numAMAFPlays = 0;
-            numAMAFWins = 0;
-        }
+            // Another thread may be publishing the children, so only look at the first child once some are expanded.
+            int expanded = tree.getExpanded(node);
+            int first = tree.getFirstChild(node);
 
-        // Determines how many children of this move are possible.
-        private void countPossibleChildren(Board board) {
-            int count = 0;
+            for (int child = first; child < first + expanded; child++) {
 
-            for (int row = 0; row < board.getDimensions(); row++) {
-                for (int col = 0; col < board.getDimensions(); col++) {
+                // Claimed by another thread but not played yet.
+                if (tree.getPlays(child) == 0) {
+                    continue;
+                }
 
-                    if (board.getValue(row, col).equals(Pieces.EMPTY)) {
-                        count++;
-                    }
+                double heuristic = calculateRAVE(node, child);
+                if (heuristic > max) {
+                    max = heuristic;
+                    bestChild = child;
                 }
             }
 
-            possibleChildren = count;
+            return bestChild;
         }
 
-        @Override
-        public String toString() {
-            return move.toString();
+        // Makes the child's move, adds the child to the path and counts the play.
+        private void play(Board curBoard, int child, Pieces curPlayer) {
+            int move = tree.getMove(child);
+            curBoard.setValue(move / curBoard.getDimensions(), move % curBoard.getDimensions(), curPlayer);
+            path[pathLength++] = child;
+            tree.addPlay(child);
         }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == this) {
-                return true;
-            }
+        // Conducts a random simulation of the remaining EMPTY tiles.
+        // Returns the winner of this random simulation (Hex always has a winner).
+        // So that AMAF values can be backed up, the engine also records the moves that each player made.
+        private Pieces defaultPolicy(Pieces player, Board curBoard) {
+            simulations++;
+            return playouts.playout(curBoard, Pieces.changePlayer(player));
+        }
 
-            if (!(obj instanceof MoveNode)) {
-                return false;
-            }
+        // Backs up the statistics. The winning player's numWins are incremented, numPlays were already incremented on
+        // the way down. AMAF is updated for the children of every node on the path, the root's too. The last node on
+        // the path was played by the given player, and the players alternate going up.
+        private void backup(Pieces winningPlayer, Pieces curPlayer) {
+            for (int i = pathLength - 1; i >= 0; i--) {
+                int node = path[i];
 
-            MoveNode moveNode = (MoveNode) obj;
+                if (i > 0 && curPlayer.equals(winningPlayer)) {
+                    tree.addWin(node);
+                }
 
-            return move.equals(moveNode.move);
-        }
+                // The children are the other player's moves, so count the ones that player also made later on, in the
+                // tree below or in the simulation, as wins if that player won.
+                Pieces childPlayer = Pieces.changePlayer(curPlayer);
+                boolean won = childPlayer.equals(winningPlayer);
 
-        @Override
-        public int hashCode() {
-            int result = 17;
-            result = 31 * result + move.hashCode();
-            return result;
+                int expanded = tree.getExpanded(node);
+                int first = tree.getFirstChild(node);
+
+                for (int child = first; child < first + expanded; child++) {
+                    if (playouts.played(childPlayer, tree.getMove(child))) {
+                        tree.addAmaf(child, won);
+                    }
+                }
+
+                // The node's own move comes after its parent too.
+                if (i > 0) {
+                    playouts.addPlayed(curPlayer, tree.getMove(node));
+                }
+
+                curPlayer = childPlayer;
+            }
         }
     }
 
-    // Class holding data relating a terminalMove by a player that created a board.
-    class tuple {
+    // Calculates UCB1 with the RAVE value of the child in place of its win rate. Exploration counts AMAF plays too,
+    // since a child with many AMAF plays is already well known.
+    private double calculateRAVE(int root, int child) {
+        int childPlays = tree.getPlays(child) + tree.getAmafPlays(child);
+        int rootPlays = tree.getPlays(root) + tree.getAmafPlays(root);
+
+        double exploration = Math.sqrt(2.0 * Math.log(rootPlays) / childPlays);
+        return raveValue(child) + 2.0 * EXPLORATION_CONSTANT * exploration;
+    }
 
-        final Pieces player;
-        final Board board;
-        final MoveNode terminalMove;
+    // Blends the node's win rate with its AMAF win rate. The weight of the AMAF win rate is
+    // sqrt(k / (3 * plays + k)), for the equivalence parameter k. Only valid once the node has been played.
+    private double raveValue(int node) {
+        int plays = tree.getPlays(node);
+        int amafPlays = tree.getAmafPlays(node);
+        double winRate = (double) tree.getWins(node) / plays;
 
-        public tuple(Pieces player, Board board, MoveNode terminalMove) {
-            this.player = player;
-            this.board = board;
-            this.terminalMove = terminalMove;
+        if (amafPlays == 0) {
+            return winRate;
         }
+
+        double beta = Math.sqrt(RAVE_EQUIVALENCE / (3 * plays + RAVE_EQUIVALENCE));
+        return (1 - beta) * winRate + beta * tree.getAmafWins(node) / amafPlays;
     }
 
-    // Class holding data representing the end state of a random simulation. The player is the winning player and the
-    // sets contain the moves made by each player during the simulation.
-    class DefaultNode {
+    // Selects the move with the best RAVE value, or NONE if the root has no children.
+    private int selectMax(int root) {
+        double max = Double.NEGATIVE_INFINITY;
+        int bestMove = NodePool.NONE;
 
-        final Pieces player;
-        final Set<MoveNode> whitePlaySet;
-        final Set<MoveNode> blackPlaySet;
+        int first = tree.getFirstChild(root);
+        int expanded = tree.getExpanded(root);
 
-        public DefaultNode(Pieces player, Set<MoveNode> whitePlaySet, Set<MoveNode> blackPlaySet) {
-            this.player = player;
-            this.whitePlaySet = new HashSet<>(whitePlaySet);
-            this.blackPlaySet = new HashSet<>(blackPlaySet);
+        for (int child = first; child < first + expanded; child++) {
+            if (tree.getPlays(child) == 0) {
+                continue;
+            }
+
+            double reward = raveValue(child);
+            if (reward > max) {
+                max = reward;
+                bestMove = tree.getMove(child);
+            }
         }
+
+        return bestMove;
     }
 }
-
@@ -1,28 +1,105 @@
 package com.company.players;
 
 import com.company.game.Board;
+import com.company.game.HexGrid;
+import com.company.search.MoveFilter;
+import com.company.search.MovePrior;
+import com.company.search.NodePool;
+import com.company.search.NodeTable;
+import com.company.search.PlayoutEngine;
 import com.company.utils.Pieces;
-import com.company.utils.utils;
 
 import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 // Represents a standard MCTS player.
+//
+// The tree lives in a NodePool: nodes are indexes, and the children of a node are a contiguous block of them.
+//
+// The trees are kept between moves. On the next move, the subtree for the move played and the opponent's reply is
+// copied to a spare pool and searched on from there, so its statistics aren't thrown away.
+//
+// With transpositions on, each tree is a DAG: a position reached by different move orders gets one node, found through
+// a NodeTable, and UCT runs on the statistics of the positions.
+//
+// Each block of children is sorted by a MovePrior when it's allocated, so the likely good moves enter the tree first.
+// With progressive widening, a node only gets its next child once it has enough plays, so simulations focus on those
+// moves until the node has been visited enough to try the rest.
+//
+// The search is also an MCTS-Solver. A move that wins the game is proven won, and proofs are passed up the tree: a
+// position is lost for the player to move if every move from it is proven lost, and won if any move is proven won.
+// Selection passes over proven losses, simulations that reach a proven node use its result instead of a playout, and
+// the search stops as soon as the root is proven.
+//
+// When pondering, the trees keep growing under the move played while the opponent thinks, on background threads that
+// are stopped once the next move is asked for or the game is over.
 public class MonteCarloPlayer implements Player{
 
     // Time limit is set to 3 seconds right now.
-    private final long TIME_LIMIT = 3000;
+    private static final long TIME_LIMIT = 3000;
 
     // Exploration constant was optimized by the literature.
     private final double EXPLORATION_CONSTANT = 1 / Math.sqrt(2);
 
-//    private int numSimulations = 0;
-//    private int size = 0;
+    // Progressive widening lets a node have WIDENING_BASE children in the tree, plus one for each time its plays
+    // grow by WIDENING_FACTOR.
+    private static final int WIDENING_BASE = 4;
+    private static final double WIDENING_FACTOR = 1.5;
+
+    // Default number of tree nodes per thread, about 8 MB.
+    private static final int POOL_CAPACITY = 1 << 18;
 
     // Color MCTS plays as.
     private Pieces player;
 
+    // How many trees are grown at once, each on its own thread.
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService helpers;
+
+    // One tree per thread, kept between moves so they are only allocated once.
+    private int poolCapacity = POOL_CAPACITY;
+    private final List<NodePool> pools = new ArrayList<>();
+
+    // Whether trees are kept for the next move, and the pool the kept subtrees are copied into.
+    private boolean treeReuse = true;
+    private NodePool spare;
+
+    // Whether children are ordered by their prior and limited by the node's plays.
+    private boolean priorOrdering = true;
+    private boolean progressiveWidening = true;
+
+    // Whether playouts answer intrusions into bridges, see PlayoutEngine.
+    private boolean bridgeSaving = true;
+
+    private long timeLimit = TIME_LIMIT;
+
+    // Whether transpositions share nodes, with a table per tree to find them.
+    private boolean transpositions = false;
+    private final List<NodeTable> tables = new ArrayList<>();
+
+    // Whether to search on the opponent's time, the background searches doing it and the flag that stops them.
+    private boolean pondering = false;
+    private final List<Future<?>> ponderers = new ArrayList<>();
+    private volatile boolean stopped;
+
+    // What is needed to find the kept subtrees: each tree's root, the key of the position they were grown from and the
+    // move that was played from it.
+    private int[] roots = new int[0];
+    private long lastKey;
+    private HexGrid lastGrid;
+    private int lastMove = NodePool.NONE;
+
+    // Statistics
+    private long simulations;
+    private long reusedSimulations;
+
     // Default constructor pretty much does nothing.
     public MonteCarloPlayer() {
         player = Pieces.EMPTY;
@@ -33,258 +110,655 @@ public class MonteCarloPlayer implements Player{
         this.player = player;
     }
 
+    // Sets how many threads search each move. One is the plain single threaded search.
+    public void setThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Need at least one thread");
+        }
+
+        this.numThreads = numThreads;
+    }
+
+    // Sets how many nodes each thread's tree can hold. Once a tree is full it stops growing, and simulations run from
+    // the tree it has.
+    public void setPoolCapacity(int poolCapacity) {
+        stopPondering();
+        this.poolCapacity = poolCapacity;
+        pools.clear();
+        tables.clear();
+        spare = null;
+        roots = new int[0];
+    }
+
+    // Turns sharing nodes between transpositions on or off.
+    public void setTranspositions(boolean transpositions) {
+        stopPondering();
+        this.transpositions = transpositions;
+        tables.clear();
+        roots = new int[0];
+    }
+
+    // Turns sorting each block of children by the MovePrior on or off.
+    public void setPriorOrdering(boolean priorOrdering) {
+        this.priorOrdering = priorOrdering;
+    }
+
+    // Turns limiting the children in the tree by the node's plays on or off.
+    public void setProgressiveWidening(boolean progressiveWidening) {
+        this.progressiveWidening = progressiveWidening;
+    }
+
+    // Turns playouts that save broken bridges on or off, instead of purely random ones.
+    public void setBridgeSaving(boolean bridgeSaving) {
+        this.bridgeSaving = bridgeSaving;
+    }
+
+    // Sets how long a move may take in milliseconds.
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    // Turns keeping the trees between moves on or off.
+    public void setTreeReuse(boolean treeReuse) {
+        this.treeReuse = treeReuse;
+    }
+
+    // Returns how many random simulations the previous move ran, over all threads.
+    public long getSimulations() {
+        return simulations;
+    }
+
+    // Turns searching on the opponent's time on or off. It only helps when the trees are kept between moves, and an
+    // opponent searching on the same machine loses the threads to it.
+    public void setPondering(boolean pondering) {
+        this.pondering = pondering;
+
+        if (!pondering) {
+            stopPondering();
+        }
+    }
+
+    // Returns how many simulations the previous move started with from the kept subtrees, over all threads.
+    public long getReusedSimulations() {
+        return reusedSimulations;
+    }
+
     // Makes a move using MCTS algorithm.
     @Override
     public void makeMove(Board board) {
-//        numSimulations = 0;
-//        size = 0;
-
-        MoveNode move = MonteCarloSearch(board, player);
+        stopPondering();
+        Point move = MonteCarloSearch(board, player);
 
-//        System.out.println("Number of simulations: " + numSimulations);
-//        System.out.println("Max size of tree: " + size);
+//        System.out.println("Number of simulations: " + simulations);
+//        System.out.println("Size of tree: " + pools.get(0).size());
         System.out.println("MOVE FOUND: " + move);
 
-        board.setValue(move.move.x, move.move.y, player);
+        board.setValue(move.x, move.y, player);
+
+        if (pondering && treeReuse && board.winner().equals(Pieces.EMPTY)) {
+            startPondering(board);
+        }
+    }
+
+    // Stops searching on the opponent's time.
+    @Override
+    public void gameOver() {
+        stopPondering();
     }
 
     // MCTS algorithm. Uses UCT, then random simulation, then backup while time allows. Finally uses max child to select
     // a move.
-    private MoveNode MonteCarloSearch(Board board, Pieces curPlayer) {
-        MoveNode root = new MoveNode(board);
-        long startTime = System.currentTimeMillis();
+    //
+    // Root parallel: every thread grows its own tree from the position for the whole time limit, and the statistics of
+    // the root's children are added up over the trees before the max child is chosen.
+    private Point MonteCarloSearch(Board board, Pieces curPlayer) {
+        long deadline = System.currentTimeMillis() + timeLimit;
+        stopped = false;
+        prepareHelpers();
+
+        while (pools.size() < numThreads) {
+            pools.add(new NodePool(poolCapacity));
+        }
 
-        while (System.currentTimeMillis() - startTime < TIME_LIMIT) {
-            tuple terminalNode = treePolicy(new Board(board), root, curPlayer);
-            Pieces winningPlayer = defaultPolicy(terminalNode.player, terminalNode.board);
-            backup(winningPlayer, terminalNode.player, terminalNode.terminalMove);
+        while (transpositions && tables.size() < numThreads) {
+            tables.add(new NodeTable(poolCapacity));
         }
 
-        return selectMax(root);
-    }
+        int reply = findLastReply(board, curPlayer);
+        roots = prepareTrees(board, curPlayer, reply);
 
-    // Chooses the best child according to UCB1 until a node with unexpanded children is encountered. A child is then
-    // expanded.
-    private tuple treePolicy(Board curBoard, MoveNode root, Pieces curPlayer) {
+        List<Future<Worker>> running = new ArrayList<>();
+        for (int i = 1; i < numThreads; i++) {
+            final Worker worker = new Worker(pools.get(i), table(i), roots[i], reply, new Board(board), curPlayer,
+                                             deadline);
 
-        // If can expand, then expand
-        if (root.possibleChildren != root.children.size()) {
-            return expand(curBoard, root, curPlayer);
+            running.add(helpers.submit(new Callable<Worker>() {
+                @Override
+                public Worker call() {
+                    worker.search();
+                    return worker;
+                }
+            }));
         }
 
-        double max = Double.MIN_VALUE;
-        MoveNode bestChild = new MoveNode();
+        Worker main = new Worker(pools.get(0), table(0), roots[0], reply, new Board(board), curPlayer, deadline);
+        main.search();
 
-        for (MoveNode child : root.children) {
+        List<Worker> workers = new ArrayList<>();
+        workers.add(main);
 
-            double UCT = calculateUCT(root, child);
-            if (UCT > max) {
-                max = UCT;
-                bestChild = child;
+        for (Future<Worker> helper : running) {
+            try {
+                workers.add(helper.get());
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+            } catch (ExecutionException e) {
+                throw new RuntimeException("ERROR: Helper search failed", e.getCause());
             }
         }
 
-        curBoard.setValue(bestChild.move.x, bestChild.move.y, curPlayer);
-        return treePolicy(curBoard, bestChild, Pieces.changePlayer(curPlayer));
-    }
+        simulations = 0;
+        for (Worker worker : workers) {
+            simulations += worker.simulations;
+        }
 
-    // Expands a MoveNode by adding an unexpanded MoveNode to the children of another MoveNode.
-    private tuple expand(Board curBoard, MoveNode root, Pieces curPlayer) {
-//        size++;
+        // Without room for even the root's children there is nothing to choose from.
+        int move = selectMax(workers);
+        if (move == NodePool.NONE) {
+            throw new IllegalStateException("ERROR: Node pool too small for the root's children");
+        }
 
-        for (int row = 0; row < curBoard.getDimensions(); row++) {
-            for (int col = 0; col < curBoard.getDimensions(); col++) {
+        lastKey = board.zobristKey();
+        lastGrid = board.getHexGrid();
+        lastMove = move;
 
-                if (curBoard.getValue(row, col).equals(Pieces.EMPTY) &&
-                        !root.children.contains(new MoveNode(new Point(row, col)))) {
+        return new Point(move / board.getDimensions(), move % board.getDimensions());
+    }
 
-                    curBoard.setValue(row, col, curPlayer);
+    // Returns the root each tree starts this move from. A tree that holds the position reached by the move played last
+    // time and the opponent's reply is copied from that grandchild on into the spare pool, which takes its place.
+    // Other trees start over.
+    private int[] prepareTrees(Board board, Pieces curPlayer, int reply) {
+        int[] newRoots = new int[numThreads];
+        reusedSimulations = 0;
 
-                    MoveNode expandedNode = new MoveNode(new Point(row, col), root, curBoard);
-                    root.children.add(expandedNode);
+        for (int i = 0; i < numThreads; i++) {
+            NodePool tree = pools.get(i);
+            int node = (treeReuse && i < roots.length) ? findReply(tree, roots[i], reply) : NodePool.NONE;
 
-                    return new tuple(curPlayer, curBoard, expandedNode);
+            if (node == NodePool.NONE) {
+                tree.clear();
+                newRoots[i] = tree.newRoot();
+
+                if (transpositions) {
+                    tables.get(i).clear();
                 }
+
+                continue;
             }
+
+            if (spare == null) {
+                spare = new NodePool(poolCapacity);
+            }
+
+            newRoots[i] = spare.copySubtree(tree, node);
+            pools.set(i, spare);
+            spare = tree;
+
+            if (transpositions) {
+                tables.get(i).remap(pools.get(i));
+            }
+
+            reusedSimulations += pools.get(i).getPlays(newRoots[i]);
         }
 
-        throw new RuntimeException("ERROR: No Empty spots on board");
+        return newRoots;
     }
 
-    // The UCB1 algorithm.
-    private double calculateUCT(MoveNode root, MoveNode child) {
-        double exploitation = (double) child.numWins / child.numPlays;
-        double exploration = Math.sqrt(2.0 * Math.log(root.numPlays) / child.numPlays);
-        return exploitation + 2 * EXPLORATION_CONSTANT * exploration;
+    // Returns the opponent's reply to the move played last time, if the Board is that position plus one stone of the
+    // opponent, or NONE.
+    private int findLastReply(Board board, Pieces curPlayer) {
+        if (lastMove == NodePool.NONE || board.getHexGrid() != lastGrid) {
+            return NodePool.NONE;
+        }
+
+        long key = lastKey ^ lastGrid.zobrist(lastMove, curPlayer);
+        Pieces opponent = Pieces.changePlayer(curPlayer);
+
+        for (int tile = 0; tile < lastGrid.size(); tile++) {
+            if ((key ^ lastGrid.zobrist(tile, opponent)) == board.zobristKey()) {
+                return tile;
+            }
+        }
+
+        return NodePool.NONE;
     }
 
-    // Conducts a random simulation of the remaining EMPTY tiles.
-    // Returns the winner of this random simulation (Hex always has a winner).
-    private Pieces defaultPolicy(Pieces player, Board curBoard) {
-//        numSimulations++;
+    // Returns the grandchild of the tree's root for the move played from it and the opponent's reply, or NONE if the
+    // tree doesn't have it.
+    private int findReply(NodePool tree, int root, int reply) {
+        if (reply == NodePool.NONE) {
+            return NodePool.NONE;
+        }
 
-        List<Point> emptyTiles = new LinkedList<>();
+        int child = tree.findChild(root, lastMove);
+        if (child == NodePool.NONE) {
+            return NodePool.NONE;
+        }
 
-        for (int row = 0; row < curBoard.getDimensions(); row++) {
-            for (int col = 0; col < curBoard.getDimensions(); col++) {
+        int grandchild = tree.findChild(tree.getTarget(child), reply);
+        return (grandchild == NodePool.NONE) ? NodePool.NONE : tree.getTarget(grandchild);
+    }
 
-                if (curBoard.getValue(row, col).equals(Pieces.EMPTY)) {
-                    emptyTiles.add(new Point(row, col));
-                }
+    // Grows every tree under the move just played on background threads until stopPondering is called. The Board is
+    // the position after the move.
+    private void startPondering(Board board) {
+        stopped = false;
+        prepareHelpers();
+
+        for (int i = 0; i < numThreads; i++) {
+            int child = pools.get(i).findChild(roots[i], lastMove);
+
+            if (child != NodePool.NONE) {
+                final Worker worker = new Worker(pools.get(i), table(i), pools.get(i).getTarget(child), lastMove,
+                                                 new Board(board), Pieces.changePlayer(player), Long.MAX_VALUE);
+
+                ponderers.add(helpers.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        worker.search();
+                    }
+                }));
             }
         }
+    }
+
+    // Stops the background searches and waits for them to finish, so the trees can be used again.
+    private void stopPondering() {
+        stopped = true;
+
+        for (Future<?> ponderer : ponderers) {
+            try {
+                ponderer.get();
 
-        Collections.shuffle(emptyTiles);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
 
-        for (Point tile : emptyTiles) {
-            player = Pieces.changePlayer(player);
-            curBoard.setValue(tile.x, tile.y, player);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("ERROR: Pondering failed", e.getCause());
+            }
         }
 
-        return utils.terminateBlack(curBoard) ? Pieces.BLACK : Pieces.WHITE;
+        ponderers.clear();
     }
 
-    // Backs up the statistics. All node's numPlays are incremented and the winning player's numWins are incremented.
-    private void backup(Pieces winningPlayer, Pieces curPlayer, MoveNode curMove) {
-        curMove.numPlays++;
+    // Returns the tree's table, or null without transpositions.
+    private NodeTable table(int tree) {
+        return transpositions ? tables.get(tree) : null;
+    }
 
-        if (curMove.parent == null) {
-            return;
+    // Makes sure there's a pool to run the helpers on.
+    private void prepareHelpers() {
+        if ((numThreads > 1 || pondering) && helpers == null) {
+            helpers = Executors.newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "monte-carlo-helper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
         }
+    }
+
+    // The UCB1 algorithm. A linked child uses the statistics of the node it's linked to, so they count every way the
+    // position was reached.
+    private double calculateUCT(NodePool tree, int root, int child) {
+        int node = tree.getTarget(child);
+        double exploitation = (double) tree.getWins(node) / tree.getPlays(node);
+        double exploration = Math.sqrt(2.0 * Math.log(tree.getPlays(root)) / tree.getPlays(node));
+        return exploitation + 2 * EXPLORATION_CONSTANT * exploration;
+    }
 
-        if (curPlayer.equals(winningPlayer)) {
-            curMove.numWins++;
+    // Selects the move with the best win/plays ration, adding up the root children of every worker's tree by move. A
+    // move proven won in any tree is taken right away, and moves proven lost come after all others.
+    private int selectMax(List<Worker> workers) {
+        Map<Integer, int[]> totals = new LinkedHashMap<>();
+
+        for (Worker worker : workers) {
+            NodePool tree = worker.tree;
+            int first = tree.getFirstChild(worker.root);
+
+            for (int child = first; child < first + tree.getExpanded(worker.root); child++) {
+                int node = tree.getTarget(child);
+                if (tree.getProof(node) == NodePool.PROVEN_WIN) {
+                    return tree.getMove(child);
+                }
+
+                int[] total = totals.get(tree.getMove(child));
+
+                if (total == null) {
+                    total = new int[3];
+                    totals.put(tree.getMove(child), total);
+                }
+
+                total[0] += tree.getWins(node);
+                total[1] += tree.getPlays(node);
+
+                if (tree.getProof(node) == NodePool.PROVEN_LOSS) {
+                    total[2] = 1;
+                }
+            }
         }
 
-        backup(winningPlayer, Pieces.changePlayer(curPlayer), curMove.parent);
-    }
+        double max = Double.NEGATIVE_INFINITY;
+        int bestMove = NodePool.NONE;
 
-    // Selects the MoveNode with the best win/plays ration.
-    private MoveNode selectMax(MoveNode root) {
-        double max = Double.MIN_VALUE;
-        MoveNode bestChild = null;
+        for (Map.Entry<Integer, int[]> entry : totals.entrySet()) {
 
-        for (MoveNode child : root.children) {
+            double reward = (double) entry.getValue()[0] / entry.getValue()[1];
+            if (entry.getValue()[2] != 0) {
+                reward -= 2;
+            }
 
-            double reward = (double) child.numWins / child.numPlays;
             if (reward > max) {
                 max = reward;
-                bestChild = child;
+                bestMove = entry.getKey();
             }
         }
 
-        return bestChild;
+        return bestMove;
     }
 
-    // Represents a move. Contains MCTS statistics like number of plays and wins in order to compute a reward value.
-    class MoveNode {
+    // One thread's tree, with its own move filter and random numbers.
+    private class Worker {
 
-        Point move;
-        int numPlays;
-        int numWins;
+        private final NodePool tree;
 
-        // This MoveNode's parent in the MCTS tree.
-        MoveNode parent;
+        // Finds transpositions, or null without them.
+        private final NodeTable table;
 
-        // All of this MoveNode's children (i.e. expanded nodes).
-        List<MoveNode> children;
+        private final Board rootBoard;
+        private final Pieces rootPlayer;
+        private final long deadline;
 
-        // Allows a fast check to see if the node is fully expanded. This is calculated once every time a node is added
-        // whereas without this, this would have to be checked every new level.
-        int possibleChildren;
+        private final int root;
 
-        public MoveNode() {
-            move = null;
-            parent = null;
-            children = new LinkedList<>();
-            possibleChildren = 0;
-            numPlays = 0;
-            numWins = 0;
-        }
+        // The move that reached the root, or NONE if it isn't known.
+        private final int rootMove;
 
-        public MoveNode(Board board) {
-            move = null;
-            parent = null;
-            children = new LinkedList<>();
-            countPossibleChildren(board);
-            numPlays = 0;
-            numWins = 0;
-        }
+        // Leaves dead and captured tiles, and tiles outside the must-play region, out of the tree.
+        private final MoveFilter moveFilter = new MoveFilter(true, true);
+
+        private final MovePrior movePrior = new MovePrior();
+
+        private final PlayoutEngine playouts = new PlayoutEngine();
+
+        // The Board each iteration plays on, reset to the root position every time.
+        private final Board curBoard;
+
+        // The nodes from the root down to the one being simulated.
+        private final int[] path;
+        private int pathLength;
+
+        // The move played to reach each node on the path. With transpositions, a node on the path can hold a
+        // position first reached by other moves, so its own move isn't always the one played.
+        private final int[] pathMoves;
+
+        // Buffer for the moves of a block of children.
+        private final int[] candidates;
+
+        private long simulations;
 
-        public MoveNode(Point move) {
-            this.move = move;
-            parent = null;
-            children = new LinkedList<>();
-            possibleChildren = 0;
-            numPlays = 0;
-            numWins = 0;
+        Worker(NodePool tree, NodeTable table, int root, int rootMove, Board rootBoard, Pieces rootPlayer,
+               long deadline) {
+            this.tree = tree;
+            this.table = table;
+            this.root = root;
+            this.rootMove = rootMove;
+            this.rootBoard = rootBoard;
+            this.rootPlayer = rootPlayer;
+            this.deadline = deadline;
+
+            int size = rootBoard.getDimensions() * rootBoard.getDimensions();
+            path = new int[size + 2];
+            pathMoves = new int[size + 2];
+            candidates = new int[size];
+            curBoard = new Board(rootBoard);
+            playouts.setBridgeSaving(bridgeSaving);
         }
 
-        public MoveNode(Point move, MoveNode parent, Board board) {
-            this.move = new Point(move);
-            this.parent = parent;
-            children = new LinkedList<>();
-            countPossibleChildren(board);
-            numPlays = 0;
-            numWins = 0;
+        // Grows the tree until the time is up, the search is stopped or the root is proven. A proven root stops the
+        // other trees too, since its result is exact.
+        void search() {
+            while (!stopped && !tree.isProven(root) && System.currentTimeMillis() < deadline) {
+                curBoard.copyFrom(rootBoard);
+                Pieces lastPlayer = treePolicy(curBoard);
+
+                int leaf = path[pathLength - 1];
+                Pieces winningPlayer = tree.isProven(leaf) ? provenWinner(leaf, lastPlayer)
+                                                           : defaultPolicy(lastPlayer, curBoard);
+                solve();
+                backup(winningPlayer, lastPlayer);
+            }
+
+            if (tree.isProven(root)) {
+                stopped = true;
+            }
         }
 
-        // Determines how many children of this move are possible.
-        private void countPossibleChildren(Board board) {
-            int count = 0;
+        // Chooses the best child according to UCB1 until a node with unexpanded children is encountered. A child is
+        // then expanded. Leaves the path on the Board and returns the player who made the last move on it.
+        private Pieces treePolicy(Board curBoard) {
+            int node = root;
+            Pieces curPlayer = rootPlayer;
+            pathLength = 0;
+            pathMoves[pathLength] = rootMove;
+            path[pathLength++] = node;
+
+            while (true) {
 
-            for (int row = 0; row < board.getDimensions(); row++) {
-                for (int col = 0; col < board.getDimensions(); col++) {
+                // If can expand, then expand
+                if (tree.isUnexpanded(node) && !allocateChildren(curBoard, node, curPlayer)) {
+                    break;
+                }
+
+                int child = widens(node) ? tree.claimChild(node) : NodePool.NONE;
+                if (child != NodePool.NONE) {
+                    return addLeaf(curBoard, child, curPlayer);
+                }
+
+                child = bestChild(node);
+                if (child == NodePool.NONE) {
+
+                    // Every child in the tree is proven lost, so the next one is added whatever the widening.
+                    child = tree.claimChild(node);
+                    if (child != NodePool.NONE) {
+                        return addLeaf(curBoard, child, curPlayer);
+                    }
 
-                    if (board.getValue(row, col).equals(Pieces.EMPTY)) {
-                        count++;
+                    // Every child was proven lost through a transposition, which solve() doesn't see.
+                    if (allChildrenLost(node)) {
+                        tree.setProof(node, NodePool.PROVEN_WIN);
                     }
+
+                    break;
                 }
+
+                play(curBoard, child, curPlayer);
+                node = tree.getTarget(child);
+                path[pathLength++] = node;
+
+                // Only reached through a transposition, since a proven child proves its parent.
+                if (tree.isProven(node)) {
+                    return curPlayer;
+                }
+
+                curPlayer = Pieces.changePlayer(curPlayer);
             }
 
-            possibleChildren = count;
+            // The tree can't grow here, simulate from this node.
+            return Pieces.changePlayer(curPlayer);
         }
 
-        @Override
-        public String toString() {
-            return move.toString();
+        // Allocates the block of children of a node, one per candidate move. Returns false if there are none, e.g.
+        // because the game is over, or the pool is full.
+        private boolean allocateChildren(Board curBoard, int node, Pieces curPlayer) {
+            if (tree.isFull() || !curBoard.winner().equals(Pieces.EMPTY)) {
+                return false;
+            }
+
+            int count = moveFilter.analyze(curBoard, curPlayer);
+            int size = curBoard.getDimensions() * curBoard.getDimensions();
+
+            int found = 0;
+            for (int tile = 0; tile < size && found < count; tile++) {
+                if (moveFilter.isCandidate(curBoard, tile)) {
+                    candidates[found++] = tile;
+                }
+            }
+
+            if (priorOrdering) {
+                int lastMove = pathMoves[pathLength - 1];
+                int moveBefore = (pathLength > 1) ? pathMoves[pathLength - 2] : NodePool.NONE;
+                movePrior.order(curBoard, candidates, found, curPlayer, lastMove, moveBefore);
+            }
+
+            return found > 0 && tree.expand(node, candidates, found);
         }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == this) {
+        // Returns whether progressive widening lets the node have another child in the tree.
+        private boolean widens(int node) {
+            int expanded = tree.getExpanded(node);
+            if (!progressiveWidening || expanded < WIDENING_BASE || expanded >= tree.getChildCount(node)) {
                 return true;
             }
 
-            if (!(obj instanceof MoveNode)) {
+            return expanded < WIDENING_BASE + Math.log(tree.getPlays(node)) / Math.log(WIDENING_FACTOR);
+        }
+
+        // Claimed children are made leaves: the child's move is played and its node added to the path. A move that
+        // wins the game is proven. Returns the player who made the move.
+        private Pieces addLeaf(Board curBoard, int child, Pieces curPlayer) {
+            play(curBoard, child, curPlayer);
+            int leaf = (table != null) ? transpose(curBoard, child) : child;
+            path[pathLength++] = leaf;
+
+            if (curBoard.winner().equals(curPlayer)) {
+                tree.setProof(leaf, NodePool.PROVEN_WIN);
+            }
+
+            return curPlayer;
+        }
+
+        // Returns the expanded child with the best UCB1 value that isn't proven lost, or NONE if there are none.
+        private int bestChild(int node) {
+            double max = Double.NEGATIVE_INFINITY;
+            int bestChild = NodePool.NONE;
+
+            int first = tree.getFirstChild(node);
+            int expanded = tree.getExpanded(node);
+
+            for (int child = first; child < first + expanded; child++) {
+                if (tree.getProof(tree.getTarget(child)) == NodePool.PROVEN_LOSS) {
+                    continue;
+                }
+
+                double UCT = calculateUCT(tree, node, child);
+                if (UCT > max) {
+                    max = UCT;
+                    bestChild = child;
+                }
+            }
+
+            return bestChild;
+        }
+
+        // Makes the child's move and records it for the path entry added next.
+        private void play(Board curBoard, int child, Pieces curPlayer) {
+            int move = tree.getMove(child);
+            pathMoves[pathLength] = move;
+            curBoard.setValue(move / curBoard.getDimensions(), move % curBoard.getDimensions(), curPlayer);
+        }
+
+        // Links a new child to the node already holding its position, or enters it into the table if there is none.
+        // Returns the node for the position.
+        private int transpose(Board curBoard, int child) {
+            long key = curBoard.zobristKey();
+            int known = table.find(key);
+
+            if (known == NodePool.NONE) {
+                table.insert(tree, key, child);
+                return child;
+            }
+
+            tree.link(child, known);
+            return known;
+        }
+
+        // Returns the winner of a proven node, given the player who made its move.
+        private Pieces provenWinner(int node, Pieces player) {
+            return (tree.getProof(node) == NodePool.PROVEN_WIN) ? player : Pieces.changePlayer(player);
+        }
+
+        // Passes the proof of the last node on the path up as far as it decides the nodes above. A node is proven lost
+        // once a child is proven won, and proven won once all its children are in the tree and proven lost.
+        private void solve() {
+            for (int i = pathLength - 1; i > 0 && tree.isProven(path[i]); i--) {
+                int parent = path[i - 1];
+
+                if (tree.getProof(path[i]) == NodePool.PROVEN_WIN) {
+                    tree.setProof(parent, NodePool.PROVEN_LOSS);
+
+                } else if (allChildrenLost(parent)) {
+                    tree.setProof(parent, NodePool.PROVEN_WIN);
+
+                } else {
+                    break;
+                }
+            }
+        }
+
+        // Returns whether every move from the node is in the tree and proven lost.
+        private boolean allChildrenLost(int node) {
+            int expanded = tree.getExpanded(node);
+            if (expanded == 0 || expanded < tree.getChildCount(node)) {
                 return false;
             }
 
-            MoveNode moveNode = (MoveNode) obj;
+            int first = tree.getFirstChild(node);
+            for (int child = first; child < first + expanded; child++) {
+                if (tree.getProof(tree.getTarget(child)) != NodePool.PROVEN_LOSS) {
+                    return false;
+                }
+            }
 
-            return move.equals(moveNode.move);
+            return true;
         }
 
-        @Override
-        public int hashCode() {
-            int result = 17;
-            result = 31 * result + move.hashCode();
-            return result;
+        // Conducts a random simulation of the remaining EMPTY tiles.
+        // Returns the winner of this random simulation (Hex always has a winner).
+        private Pieces defaultPolicy(Pieces player, Board curBoard) {
+            simulations++;
+            int lastMove = pathMoves[pathLength - 1];
+            return playouts.playout(curBoard, Pieces.changePlayer(player), lastMove);
         }
-    }
 
-    // Class holding data relating a terminalMove by a player that created a board.
-    class tuple {
+        // Backs up the statistics. All node's numPlays are incremented and the winning player's numWins are
+        // incremented. The last node on the path was played by the given player, and the players alternate going up.
+        private void backup(Pieces winningPlayer, Pieces curPlayer) {
+            for (int i = pathLength - 1; i >= 0; i--) {
+                int node = path[i];
+                tree.addPlay(node);
 
-        final Pieces player;
-        final Board board;
-        final MoveNode terminalMove;
+                if (i > 0 && curPlayer.equals(winningPlayer)) {
+                    tree.addWin(node);
+                }
 
-        public tuple(Pieces player, Board board, MoveNode terminalMove) {
-            this.player = player;
-            this.board = board;
-            this.terminalMove = terminalMove;
+                curPlayer = Pieces.changePlayer(curPlayer);
+            }
         }
     }
 }
-
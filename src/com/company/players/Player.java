@@ -7,4 +7,8 @@ public interface Player {
 
     // All players need to at least make a move.
     void makeMove(Board board);
+
+    // Called once the game is over, e.g. to stop thinking on the opponent's time.
+    default void gameOver() {
+    }
 }
@@ -0,0 +1,193 @@
+package com.company.search;
+
+import com.company.utils.Pieces;
+
+import java.util.Arrays;
+
+// A fixed size cache of static evaluations, keyed by a position hash combined with the side being evaluated for.
+// Entries live in parallel primitive arrays grouped into buckets of two slots, so nothing is allocated after
+// construction.
+public class EvaluationCache {
+
+    // How a new entry finds room in a full bucket.
+    public enum ReplacementPolicy {
+
+        // Always overwrite the bucket's first slot. The second slot is never used.
+        ALWAYS_REPLACE,
+
+        // Only fill empty slots, keeping whatever was cached first.
+        KEEP_EXISTING,
+
+        // Use both slots and overwrite the one used least recently.
+        TWO_WAY_LRU
+    }
+
+    // Mixed into the key when evaluating for BLACK so both sides can share one cache.
+    private static final long BLACK_KEY = 0x5DEECE66DL * 0x9E3779B97F4A7C15L;
+
+    private final ReplacementPolicy policy;
+    private final int bucketMask;
+
+    private final long[] keys;
+    private final double[] values;
+    private final boolean[] occupied;
+
+    // For TWO_WAY_LRU, the slot in each bucket that was used last.
+    private final byte[] lastUsed;
+
+    // Statistics.
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    // The value found by the last successful probe.
+    private double value;
+
+    // Creates a cache with room for at least capacity entries. The number of buckets is rounded up to a power of two.
+    public EvaluationCache(int capacity, ReplacementPolicy policy) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2");
+        }
+
+        int buckets = 1;
+        while (2 * buckets < capacity) {
+            buckets <<= 1;
+        }
+
+        this.policy = policy;
+        bucketMask = buckets - 1;
+
+        keys = new long[2 * buckets];
+        values = new double[2 * buckets];
+        occupied = new boolean[2 * buckets];
+        lastUsed = new byte[buckets];
+    }
+
+    // Combines a position hash with the side the evaluation is for.
+    public static long key(long positionKey, Pieces player) {
+        return player == Pieces.BLACK ? positionKey ^ BLACK_KEY : positionKey;
+    }
+
+    // Looks up a key. Returns true on a hit, in which case the cached evaluation is available from value().
+    public boolean probe(long key) {
+        int bucket = bucketOf(key);
+        int slot = findSlot(bucket, key);
+
+        if (slot < 0) {
+            misses++;
+            return false;
+        }
+
+        lastUsed[bucket] = (byte) (slot - 2 * bucket);
+        value = values[slot];
+        hits++;
+        return true;
+    }
+
+    // Returns the evaluation found by the last successful probe.
+    public double value() {
+        return value;
+    }
+
+    // Caches an evaluation, evicting an older entry if the policy calls for it.
+    public void store(long key, double evaluation) {
+        int bucket = bucketOf(key);
+        int slot = findSlot(bucket, key);
+
+        if (slot < 0) {
+            slot = chooseSlot(bucket);
+        }
+
+        if (slot < 0) {
+            return;
+        }
+
+        if (occupied[slot] && keys[slot] != key) {
+            evictions++;
+        }
+
+        keys[slot] = key;
+        values[slot] = evaluation;
+        occupied[slot] = true;
+        lastUsed[bucket] = (byte) (slot - 2 * bucket);
+    }
+
+    // Empties the cache and resets the statistics.
+    public void clear() {
+        Arrays.fill(occupied, false);
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    // Returns the number of entries the cache can hold.
+    public int capacity() {
+        return policy == ReplacementPolicy.ALWAYS_REPLACE ? keys.length / 2 : keys.length;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    // Returns the fraction of probes that were hits.
+    public double hitRate() {
+        return (hits + misses == 0) ? 0 : (double) hits / (hits + misses);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits: %d, misses: %d, evictions: %d, hit rate: %.3f", hits, misses, evictions, hitRate());
+    }
+
+    // Finds the slot in a bucket already holding the key, or returns -1.
+    private int findSlot(int bucket, long key) {
+        for (int way = 0; way < 2; way++) {
+            int slot = 2 * bucket + way;
+
+            if (occupied[slot] && keys[slot] == key) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    // Picks the slot a new key goes in according to the policy, or returns -1 if it shouldn't be stored.
+    private int chooseSlot(int bucket) {
+        switch (policy) {
+            case ALWAYS_REPLACE:
+                return 2 * bucket;
+            case KEEP_EXISTING:
+                return findEmptySlot(bucket);
+            case TWO_WAY_LRU:
+                int slot = findEmptySlot(bucket);
+                return (slot >= 0) ? slot : 2 * bucket + 1 - lastUsed[bucket];
+            default:
+                throw new IllegalArgumentException("Unknown replacement policy: " + policy);
+        }
+    }
+
+    // Finds an empty slot in a bucket, or returns -1 if both are taken.
+    private int findEmptySlot(int bucket) {
+        for (int way = 0; way < 2; way++) {
+            if (!occupied[2 * bucket + way]) {
+                return 2 * bucket + way;
+            }
+        }
+
+        return -1;
+    }
+
+    // Zobrist keys are already well mixed, so the high bits pick the bucket.
+    private int bucketOf(long key) {
+        return (int) (key >>> 32) & bucketMask;
+    }
+}
@@ -0,0 +1,13 @@
+package com.company.search;
+
+import com.company.game.Board;
+import com.company.utils.Pieces;
+
+// A static evaluation of a position. Higher values are better for the player being evaluated for.
+public interface Evaluator {
+
+    double evaluate(Board board, Pieces player);
+
+    // Returns an evaluator of the same kind that can be used on another thread at the same time as this one.
+    Evaluator copy();
+}
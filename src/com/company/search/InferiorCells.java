@@ -0,0 +1,217 @@
+package com.company.search;
+
+import com.company.game.Board;
+import com.company.game.HexGrid;
+import com.company.utils.Pieces;
+
+// Finds EMPTY tiles that no search needs to try, using local patterns over a tile's six neighbors.
+//
+// A tile is dead when its color can't matter: however its EMPTY neighbors end up colored, its WHITE neighbors are
+// one unbroken run around it and so are its BLACK neighbors. A stone there can't join anything that isn't joined
+// around it already. Off-board neighbors count as in NeighborCodes, mostly as stones of the color owning the edge.
+//
+// Two adjacent EMPTY tiles are captured by a color when that color playing either one makes the other dead. If the
+// opponent plays one, the answer in the other leaves the opponent's stone dead, so the tiles are as good as the
+// capturing color's already.
+//
+// Playing a dead or captured tile is no better than passing, so these tiles are left out of move generation. Found
+// tiles are filled in, dead ones with an arbitrary color and captured ones with the captor's, and the board is
+// checked again since the new stones can make more tiles dead or captured.
+public class InferiorCells {
+
+    // DEAD[code] for each neighbor code, see NeighborCodes.
+    private static final boolean[] DEAD = new boolean[NeighborCodes.COUNT];
+
+    static {
+        for (int code = 0; code < DEAD.length; code++) {
+            DEAD[code] = isDeadPattern(code);
+        }
+    }
+
+    private HexGrid hexGrid;
+
+    // Neighbor code contribution of each tile's off-board neighbors.
+    private int[] edgeCodes;
+
+    // The board's colors with inferior tiles filled in.
+    private int[] colors;
+
+    private boolean[] inferior;
+    private boolean[] dead;
+
+    // Tiles that can be played, i.e. EMPTY and not inferior.
+    private int live;
+
+    // Classifies every EMPTY tile of the Board and returns how many candidate moves there are. The candidates are the
+    // tiles that aren't inferior, or every EMPTY tile if all of them are.
+    public int analyze(Board board) {
+        prepare(board);
+        int size = colors.length;
+        int empty = 0;
+
+        for (int tile = 0; tile < size; tile++) {
+            colors[tile] = NeighborCodes.color(board.getTile(tile));
+            inferior[tile] = false;
+            dead[tile] = false;
+
+            if (colors[tile] == NeighborCodes.EMPTY) {
+                empty++;
+            }
+        }
+
+        live = empty;
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+
+            for (int tile = 0; tile < size; tile++) {
+                if (colors[tile] != NeighborCodes.EMPTY) {
+                    continue;
+                }
+
+                if (DEAD[code(tile)]) {
+                    fill(tile, NeighborCodes.WHITE);
+                    dead[tile] = true;
+                    changed = true;
+
+                } else if (fillCaptured(tile)) {
+                    changed = true;
+                }
+            }
+        }
+
+        return (live == 0) ? empty : live;
+    }
+
+    // Returns whether the tile is a candidate move in the last analyzed Board.
+    public boolean isCandidate(Board board, int tile) {
+        return board.getTile(tile) == Pieces.EMPTY && (live == 0 || !inferior[tile]);
+    }
+
+    // Returns whether the tile was found dead in the last analyzed Board.
+    public boolean isDead(int tile) {
+        return dead[tile];
+    }
+
+    // Returns the color that captured the tile in the last analyzed Board, or EMPTY.
+    public Pieces capturedBy(int tile) {
+        if (!inferior[tile] || dead[tile]) {
+            return Pieces.EMPTY;
+        }
+
+        return (colors[tile] == NeighborCodes.WHITE) ? Pieces.WHITE : Pieces.BLACK;
+    }
+
+    // Looks for a captured pair with the tile and an EMPTY neighbor, and fills it in if there is one. Only three
+    // directions are checked so each pair is only looked at from one of its tiles.
+    private boolean fillCaptured(int tile) {
+        int tileCode = code(tile);
+
+        for (int dir = 1; dir <= 3; dir++) {
+            int other = hexGrid.neighbor(tile, dir);
+            if (other == HexGrid.OFF_BOARD || colors[other] != NeighborCodes.EMPTY) {
+                continue;
+            }
+
+            int otherCode = code(other);
+            int back = (dir + 3) % 6;
+
+            for (int color = NeighborCodes.WHITE; color <= NeighborCodes.BLACK; color++) {
+                if (DEAD[tileCode + color * NeighborCodes.WEIGHTS[dir]] &&
+                    DEAD[otherCode + color * NeighborCodes.WEIGHTS[back]]) {
+                    fill(tile, color);
+                    fill(other, color);
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void fill(int tile, int color) {
+        colors[tile] = color;
+        inferior[tile] = true;
+        live--;
+    }
+
+    // Returns the neighbor code of a tile.
+    private int code(int tile) {
+        int code = edgeCodes[tile];
+
+        for (int dir = 0; dir < 6; dir++) {
+            int neighbor = hexGrid.neighbor(tile, dir);
+
+            if (neighbor != HexGrid.OFF_BOARD) {
+                code += colors[neighbor] * NeighborCodes.WEIGHTS[dir];
+            }
+        }
+
+        return code;
+    }
+
+    // Sets up the arrays for the Board's size.
+    private void prepare(Board board) {
+        if (hexGrid == board.getHexGrid()) {
+            return;
+        }
+
+        hexGrid = board.getHexGrid();
+        int size = hexGrid.size();
+
+        edgeCodes = NeighborCodes.edgeCodes(hexGrid);
+        colors = new int[size];
+        inferior = new boolean[size];
+        dead = new boolean[size];
+    }
+
+    // Tries every way of coloring the EMPTY neighbors of the code and returns whether each color is at most one run
+    // around the tile in all of them.
+    private static boolean isDeadPattern(int code) {
+        int[] ring = new int[6];
+        int emptyMask = 0;
+
+        for (int dir = 0; dir < 6; dir++) {
+            ring[dir] = NeighborCodes.colorAt(code, dir);
+
+            if (ring[dir] == NeighborCodes.EMPTY) {
+                emptyMask |= 1 << dir;
+            }
+        }
+
+        // Each subset of the EMPTY neighbors is the set colored BLACK, the rest are WHITE.
+        for (int blacks = emptyMask; ; blacks = (blacks - 1) & emptyMask) {
+            int[] filled = new int[6];
+            for (int dir = 0; dir < 6; dir++) {
+                if (ring[dir] != NeighborCodes.EMPTY) {
+                    filled[dir] = ring[dir];
+
+                } else {
+                    filled[dir] = ((blacks & (1 << dir)) != 0) ? NeighborCodes.BLACK : NeighborCodes.WHITE;
+                }
+            }
+
+            if (runs(filled, NeighborCodes.WHITE) > 1 || runs(filled, NeighborCodes.BLACK) > 1) {
+                return false;
+            }
+
+            if (blacks == 0) {
+                return true;
+            }
+        }
+    }
+
+    // Counts the unbroken runs of a color around a fully colored ring.
+    private static int runs(int[] ring, int color) {
+        int runs = 0;
+
+        for (int dir = 0; dir < 6; dir++) {
+            if (ring[dir] == color && ring[(dir + 5) % 6] != color) {
+                runs++;
+            }
+        }
+
+        return runs;
+    }
+}
@@ -0,0 +1,86 @@
+package com.company.search;
+
+import com.company.game.Board;
+import com.company.utils.Pieces;
+
+// Decides which EMPTY tiles a search tries as moves. Dead and captured tiles are left out (see InferiorCells), and
+// when the opponent has a virtual connection between its edges only the tiles in its must-play region are kept (see
+// VirtualConnections). Either can be turned off. There is always at least one candidate while there are EMPTY tiles.
+public class MoveFilter {
+
+    // Null when turned off.
+    private InferiorCells inferiorCells;
+    private VirtualConnections connections;
+
+    // Whether the last analyzed Board is restricted to its must-play region, and whether that region only has
+    // inferior tiles.
+    private boolean restricted;
+    private boolean allInferior;
+
+    public MoveFilter(boolean inferiorCellPruning, boolean mustPlayPruning) {
+        setInferiorCellPruning(inferiorCellPruning);
+        setMustPlayPruning(mustPlayPruning);
+    }
+
+    // Turns leaving out dead and captured tiles on or off.
+    public void setInferiorCellPruning(boolean pruning) {
+        inferiorCells = pruning ? new InferiorCells() : null;
+    }
+
+    // Turns restricting moves to the must-play region on or off.
+    public void setMustPlayPruning(boolean pruning) {
+        connections = pruning ? new VirtualConnections() : null;
+    }
+
+    // Analyzes the Board for the player to move and returns how many candidate moves there are. If the must-play
+    // region only holds inferior tiles, its tiles are the candidates anyway.
+    public int analyze(Board board, Pieces toMove) {
+        restricted = false;
+        allInferior = false;
+
+        int candidates = (inferiorCells != null) ? inferiorCells.analyze(board) : countCandidates(board);
+
+        if (connections != null && connections.findMustPlay(board, toMove)) {
+            restricted = true;
+            candidates = countCandidates(board);
+
+            if (candidates == 0) {
+                allInferior = true;
+                candidates = countCandidates(board);
+            }
+        }
+
+        return candidates;
+    }
+
+    // Returns whether the tile is a candidate move in the last analyzed Board.
+    public boolean isCandidate(Board board, int tile) {
+        if (restricted && !connections.inMustPlay(tile)) {
+            return false;
+        }
+
+        if (inferiorCells == null || allInferior) {
+            return board.getTile(tile) == Pieces.EMPTY;
+        }
+
+        return inferiorCells.isCandidate(board, tile);
+    }
+
+    private int countCandidates(Board board) {
+        int size = board.getDimensions() * board.getDimensions();
+        int count = 0;
+
+        for (int tile = 0; tile < size; tile++) {
+            if (isCandidate(board, tile)) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    // Returns the connection engine, or null if must-play pruning is off.
+    public VirtualConnections getConnections() {
+        return connections;
+    }
+}
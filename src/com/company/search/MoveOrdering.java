@@ -0,0 +1,190 @@
+package com.company.search;
+
+import com.company.game.Board;
+import com.company.game.HexGrid;
+import com.company.utils.Pieces;
+
+import java.util.Arrays;
+
+// Orders the moves of an alpha beta search so that the ones most likely to cause a cutoff come first:
+//   1. the transposition table's best move,
+//   2. the two killer moves of the ply, i.e. the last moves that caused a cutoff at the same depth in the tree,
+//   3. everything else by history score, i.e. how often and how deep the tile caused cutoffs so far.
+// Optionally, tiles close to the last two moves played get a bonus on top of their history score, since in Hex the
+// best replies are usually close to the action.
+//
+// Also optionally, dead and captured tiles and tiles outside the must-play region are left out of the moves
+// altogether, see MoveFilter.
+public class MoveOrdering {
+
+    static final int NO_MOVE = -1;
+
+    private static final int TABLE_MOVE_SCORE = Integer.MAX_VALUE;
+    private static final int FIRST_KILLER_SCORE = Integer.MAX_VALUE - 1;
+    private static final int SECOND_KILLER_SCORE = Integer.MAX_VALUE - 2;
+
+    // Bonuses for being next to or a bridge away from one of the last moves.
+    private static final int ADJACENT_BONUS = 1000;
+    private static final int NEARBY_BONUS = 400;
+
+    // History scores are capped below the killer scores.
+    private static final int MAX_HISTORY = 1 << 28;
+
+    private boolean proximity;
+
+    // Decides which EMPTY tiles are moves.
+    private final MoveFilter filter = new MoveFilter(false, false);
+
+    private HexGrid hexGrid;
+
+    // killers[ply][slot] and history[tile].
+    private int[][] killers;
+    private int[] history;
+
+    // Per ply buffers for the ordered moves and their scores.
+    private int[][] moves;
+    private int[][] scores;
+
+    // Proximity bonus per tile, filled for the node being ordered.
+    private int[] bonus;
+
+    public MoveOrdering(boolean proximity) {
+        this.proximity = proximity;
+    }
+
+    // Turns the bonus for tiles near the last moves on or off.
+    public void setProximity(boolean proximity) {
+        this.proximity = proximity;
+    }
+
+    // Turns leaving out dead and captured tiles on or off.
+    public void setInferiorCellPruning(boolean pruning) {
+        filter.setInferiorCellPruning(pruning);
+    }
+
+    // Turns leaving out tiles outside the must-play region on or off.
+    public void setMustPlayPruning(boolean pruning) {
+        filter.setMustPlayPruning(pruning);
+    }
+
+    // Called at the start of every move. Killers are cleared and history is aged so it favors recent cutoffs.
+    public void newSearch(Board board) {
+        int size = board.getDimensions() * board.getDimensions();
+
+        if (hexGrid == null || hexGrid != board.getHexGrid()) {
+            hexGrid = board.getHexGrid();
+            killers = new int[size + 1][2];
+            history = new int[size];
+            moves = new int[size + 1][size];
+            scores = new int[size + 1][size];
+            bonus = new int[size];
+        }
+
+        for (int[] slots : killers) {
+            Arrays.fill(slots, NO_MOVE);
+        }
+
+        for (int tile = 0; tile < size; tile++) {
+            history[tile] >>= 1;
+        }
+    }
+
+    // Fills the ply's buffer with the Board's EMPTY tiles, best first, and returns how many there are. The last
+    // moves are the tiles most recently played, most recent first, and may be NO_MOVE. With pruning on, only the
+    // tiles the filter keeps for the player to move are included.
+    public int orderMoves(Board board, Pieces toMove, int ply, int tableMove, int lastMove, int moveBefore) {
+        int[] plyMoves = moves[ply];
+        int[] plyScores = scores[ply];
+        int size = plyMoves.length;
+
+        if (proximity) {
+            addBonus(lastMove, 1);
+            addBonus(moveBefore, 1);
+        }
+
+        filter.analyze(board, toMove);
+
+        int count = 0;
+        for (int tile = 0; tile < size; tile++) {
+            if (!filter.isCandidate(board, tile)) {
+                continue;
+            }
+
+            int score;
+            if (tile == tableMove) {
+                score = TABLE_MOVE_SCORE;
+
+            } else if (tile == killers[ply][0]) {
+                score = FIRST_KILLER_SCORE;
+
+            } else if (tile == killers[ply][1]) {
+                score = SECOND_KILLER_SCORE;
+
+            } else {
+                score = history[tile] + bonus[tile];
+            }
+
+            // Insertion sort, the lists are short.
+            int i = count++;
+            while (i > 0 && plyScores[i - 1] < score) {
+                plyMoves[i] = plyMoves[i - 1];
+                plyScores[i] = plyScores[i - 1];
+                i--;
+            }
+
+            plyMoves[i] = tile;
+            plyScores[i] = score;
+        }
+
+        if (proximity) {
+            addBonus(lastMove, -1);
+            addBonus(moveBefore, -1);
+        }
+
+        return count;
+    }
+
+    // Returns the ply's ordered moves, as filled by the last call to orderMoves for that ply.
+    public int[] getMoves(int ply) {
+        return moves[ply];
+    }
+
+    // Records a move that caused a cutoff, as a killer for its ply and in the history table.
+    public void recordCutoff(int ply, int tile, int depth) {
+        if (killers[ply][0] != tile) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = tile;
+        }
+
+        history[tile] = Math.min(MAX_HISTORY, history[tile] + depth * depth);
+    }
+
+    // Adds (or with a sign of -1, removes) the proximity bonus around a move.
+    private void addBonus(int move, int sign) {
+        addProximityBonus(hexGrid, bonus, move, sign * ADJACENT_BONUS, sign * NEARBY_BONUS);
+    }
+
+    // Adds one bonus to the scores of the tiles next to a move and another to the tiles a bridge away from it. Does
+    // nothing for NO_MOVE. Also used by MovePrior.
+    static void addProximityBonus(HexGrid hexGrid, int[] scores, int move, int adjacentBonus, int nearbyBonus) {
+        if (move == NO_MOVE) {
+            return;
+        }
+
+        for (int dir = 0; dir < 6; dir++) {
+            int neighbor = hexGrid.neighbor(move, dir);
+
+            if (neighbor == HexGrid.OFF_BOARD) {
+                continue;
+            }
+
+            scores[neighbor] += adjacentBonus;
+
+            // The tile past the neighbor in the next direction over is a bridge away.
+            int bridge = hexGrid.neighbor(neighbor, (dir + 1) % 6);
+            if (bridge != HexGrid.OFF_BOARD) {
+                scores[bridge] += nearbyBonus;
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.company.search;
+
+import com.company.game.Board;
+import com.company.game.HexGrid;
+import com.company.utils.Pieces;
+
+// Orders the candidate moves of an MCTS node by a cheap prior, so that the children expanded first are the likely
+// good ones instead of whichever come first in row-major order. A move scores for
+//   1. saving a bridge of the player to move that the last move intruded into,
+//   2. being next to or a bridge away from the last move, and a little less for the move before it,
+//   3. being close to the center of the board, which mostly decides the order before there is anything to be near.
+//
+// Not thread safe, every thread needs its own.
+public class MovePrior {
+
+    private static final int NO_MOVE = MoveOrdering.NO_MOVE;
+
+    private static final int BRIDGE_SAVE_BONUS = 10000;
+
+    // Bonuses for being next to or a bridge away from the last move. The move before gets half.
+    private static final int ADJACENT_BONUS = 1000;
+    private static final int NEARBY_BONUS = 400;
+
+    // Penalty per half step away from the center.
+    private static final int CENTER_PENALTY = 10;
+
+    private HexGrid hexGrid;
+
+    // Prior of each tile, filled for the node being ordered, and the center part of it.
+    private int[] scores;
+    private int[] centerScores;
+
+    // Sorts the first count moves best first. The last moves are the tiles most recently played, most recent first,
+    // and may be NodePool.NONE.
+    public void order(Board board, int[] moves, int count, Pieces toMove, int lastMove, int moveBefore) {
+        prepare(board);
+
+        for (int i = 0; i < count; i++) {
+            scores[moves[i]] = centerScores[moves[i]];
+        }
+
+        MoveOrdering.addProximityBonus(hexGrid, scores, lastMove, ADJACENT_BONUS, NEARBY_BONUS);
+        MoveOrdering.addProximityBonus(hexGrid, scores, moveBefore, ADJACENT_BONUS / 2, NEARBY_BONUS / 2);
+        addBridgeSaves(board, lastMove, toMove);
+
+        // Insertion sort, the blocks are short.
+        for (int i = 1; i < count; i++) {
+            int move = moves[i];
+            int j = i;
+
+            while (j > 0 && scores[moves[j - 1]] < scores[move]) {
+                moves[j] = moves[j - 1];
+                j--;
+            }
+
+            moves[j] = move;
+        }
+    }
+
+    // Adds the bonus for the other carrier tile of each bridge of the player to move that the last move is in. Two
+    // neighbors of the move two directions apart are a bridge, with the neighbor between them as the other carrier.
+    private void addBridgeSaves(Board board, int lastMove, Pieces toMove) {
+        if (lastMove == NO_MOVE) {
+            return;
+        }
+
+        for (int dir = 0; dir < 6; dir++) {
+            int first = hexGrid.neighbor(lastMove, dir);
+            int carrier = hexGrid.neighbor(lastMove, (dir + 1) % 6);
+            int second = hexGrid.neighbor(lastMove, (dir + 2) % 6);
+
+            if (first == HexGrid.OFF_BOARD || carrier == HexGrid.OFF_BOARD || second == HexGrid.OFF_BOARD) {
+                continue;
+            }
+
+            if (board.getTile(first) == toMove && board.getTile(second) == toMove
+                    && board.getTile(carrier) == Pieces.EMPTY) {
+                scores[carrier] += BRIDGE_SAVE_BONUS;
+            }
+        }
+    }
+
+    // Sets up the arrays for the Board's size.
+    private void prepare(Board board) {
+        if (hexGrid == board.getHexGrid()) {
+            return;
+        }
+
+        hexGrid = board.getHexGrid();
+        int dimensions = hexGrid.getDimensions();
+        scores = new int[hexGrid.size()];
+        centerScores = new int[hexGrid.size()];
+
+        // Hex distance in doubled coordinates, so the center of an even board is a whole number away.
+        for (int tile = 0; tile < hexGrid.size(); tile++) {
+            int row = 2 * (tile / dimensions) - (dimensions - 1);
+            int col = 2 * (tile % dimensions) - (dimensions - 1);
+            int distance = Math.max(Math.max(Math.abs(row), Math.abs(col)), Math.abs(row + col));
+            centerScores[tile] = -CENTER_PENALTY * distance;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.company.search;
+
+import com.company.game.HexGrid;
+import com.company.utils.Pieces;
+
+// Neighbor codes pack the colors of a tile's six neighbors into one number, sum(color of neighbor in direction dir *
+// 3^dir), so local patterns can be matched with tables of COUNT entries. Off-board neighbors count as stones of the
+// color that owns that edge, except the one off-board neighbor of the two corners touching both edges, which counts as
+// EMPTY.
+final class NeighborCodes {
+
+    // Colors as used in neighbor codes.
+    static final int EMPTY = 0;
+    static final int WHITE = 1;
+    static final int BLACK = 2;
+
+    // Number of different codes.
+    static final int COUNT = 729;
+
+    // Powers of 3, the weight of each direction in a neighbor code.
+    static final int[] WEIGHTS = {1, 3, 9, 27, 81, 243};
+
+    private NeighborCodes() {
+    }
+
+    // Returns the neighbor code contribution of each tile's off-board neighbors.
+    static int[] edgeCodes(HexGrid hexGrid) {
+        int dimensions = hexGrid.getDimensions();
+        int[] edgeCodes = new int[hexGrid.size()];
+
+        // WHITE owns the left and right edges, BLACK the top and bottom.
+        for (int tile = 0; tile < hexGrid.size(); tile++) {
+            for (int dir = 0; dir < 6; dir++) {
+                int row = tile / dimensions + HexGrid.ROW_OFFSETS[dir];
+                int col = tile % dimensions + HexGrid.COL_OFFSETS[dir];
+                boolean rowOff = row < 0 || row >= dimensions;
+                boolean colOff = col < 0 || col >= dimensions;
+
+                if (rowOff && !colOff) {
+                    edgeCodes[tile] += BLACK * WEIGHTS[dir];
+
+                } else if (colOff && !rowOff) {
+                    edgeCodes[tile] += WHITE * WEIGHTS[dir];
+                }
+            }
+        }
+
+        return edgeCodes;
+    }
+
+    // Returns the color of the neighbor in the direction.
+    static int colorAt(int code, int dir) {
+        return code / WEIGHTS[dir] % 3;
+    }
+
+    static int color(Pieces val) {
+        switch (val) {
+            case WHITE:
+                return WHITE;
+            case BLACK:
+                return BLACK;
+            default:
+                return EMPTY;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.company.search;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Preallocated storage for an MCTS tree. Nodes are indexes into parallel arrays instead of objects, so growing the
+// tree creates no garbage.
+//
+// The children of a node sit next to each other in one block, allocated with their moves the first time the node is
+// expanded. Selection then scans a contiguous range. Children are expanded in block order by claiming the next slot.
+//
+// Statistics are atomic so several threads can share a tree. A node's block is published by setting its first child
+// index after the moves are written, so a thread that sees the index also sees the moves.
+//
+// When the pool runs out of room, allocation fails and the node stays a leaf. The search then keeps simulating from
+// the tree it has.
+//
+// Nodes can be proven won or lost for an MCTS-Solver, from the point of view of the player who made the node's move.
+//
+// A child can also be linked to a node elsewhere in the pool that holds the same position, which turns the tree into
+// a DAG where transpositions share one node (see NodeTable). A linked child only holds its move, everything else is
+// the target's.
+public class NodePool {
+
+    // Marks a missing node, e.g. the move of the root or the children of a node that wasn't expanded yet.
+    public static final int NONE = -1;
+
+    // Marks a node whose children are being allocated by another thread.
+    private static final int PENDING = -2;
+
+    // Proofs of a node, for the player who made its move.
+    public static final int UNPROVEN = 0;
+    public static final int PROVEN_WIN = 1;
+    public static final int PROVEN_LOSS = -1;
+
+    private final int capacity;
+
+    // Tile of the move leading to each node.
+    private final int[] moves;
+
+    private final int[] childCounts;
+    private final AtomicIntegerArray firstChildren;
+
+    // How many children of each node have been claimed. Can run past the child count.
+    private final AtomicIntegerArray claimed;
+
+    private final AtomicIntegerArray plays;
+    private final AtomicIntegerArray wins;
+
+    // AMAF plays in the high half and AMAF wins in the low half, so one atomic add updates both.
+    private final AtomicLongArray amaf;
+
+    // The proof of each node. A proof never changes once set, so threads racing to set one agree on it.
+    private final byte[] proofs;
+
+    // The node each linked child stands for, or NONE.
+    private final int[] links;
+
+    // Where copySubtree put each node of the source pool, or NONE. Only allocated once a subtree is copied.
+    private int[] copies;
+
+    // Index of the next free node.
+    private final AtomicInteger next = new AtomicInteger();
+
+    // Statistics
+    private final AtomicLong failedAllocations = new AtomicLong();
+
+    public NodePool(int capacity) {
+        this.capacity = capacity;
+        moves = new int[capacity];
+        childCounts = new int[capacity];
+        firstChildren = new AtomicIntegerArray(capacity);
+        claimed = new AtomicIntegerArray(capacity);
+        plays = new AtomicIntegerArray(capacity);
+        wins = new AtomicIntegerArray(capacity);
+        amaf = new AtomicLongArray(capacity);
+        links = new int[capacity];
+        proofs = new byte[capacity];
+    }
+
+    // Returns how many bytes a pool of the given capacity takes, roughly.
+    public static long bytesFor(int capacity) {
+        return (9L * Integer.BYTES + 1) * capacity;
+    }
+
+    // Empties the pool. Must not be called while other threads use it.
+    public void clear() {
+        next.set(0);
+    }
+
+    // Allocates a root node without a move. Returns NONE if the pool is full.
+    public int newRoot() {
+        return allocate(NONE);
+    }
+
+    // Allocates a block of children for the node with the given moves, unless another thread got there first or the
+    // pool is full. Returns whether the node has children now.
+    public boolean expand(int node, int[] childMoves, int count) {
+        if (!firstChildren.compareAndSet(node, NONE, PENDING)) {
+            return hasChildren(node);
+        }
+
+        int first = next.getAndAdd(count);
+        if (first + count > capacity) {
+            failedAllocations.incrementAndGet();
+            firstChildren.set(node, NONE);
+            return false;
+        }
+
+        for (int i = 0; i < count; i++) {
+            reset(first + i, childMoves[i]);
+        }
+
+        childCounts[node] = count;
+        firstChildren.set(node, first);
+        return true;
+    }
+
+    // Empties the pool and copies the subtree under a node of another pool into it, with the node as the new root.
+    // The copy is laid out breadth first, so each block still sits together. A node reached through several links is
+    // copied once, where it is first reached, and the other children for it become links to the copy. Returns the new
+    // root. Must not be called while other threads use either pool.
+    public int copySubtree(NodePool source, int node) {
+        clear();
+
+        if (copies == null || copies.length < source.capacity) {
+            copies = new int[source.capacity];
+        }
+
+        Arrays.fill(copies, NONE);
+
+        int root = allocate(source.moves[node]);
+        copyStatistics(source, node, root);
+        copies[node] = root;
+
+        // Until a node is reached by the loop below, its first child index holds the index of its original instead.
+        // Children always come after their parent, so every node is reached once.
+        firstChildren.set(root, node);
+
+        for (int copy = root; copy < size(); copy++) {
+            if (links[copy] != NONE) {
+                continue;
+            }
+
+            int original = firstChildren.get(copy);
+            int count = source.getChildCount(original);
+            int first = (count > 0) ? next.getAndAdd(count) : NONE;
+
+            if (count == 0 || first + count > capacity) {
+                if (count > 0) {
+                    failedAllocations.incrementAndGet();
+                    next.set(capacity);
+                }
+
+                childCounts[copy] = 0;
+                claimed.set(copy, 0);
+                firstChildren.set(copy, NONE);
+                continue;
+            }
+
+            int sourceFirst = source.getFirstChild(original);
+            for (int i = 0; i < count; i++) {
+                int child = first + i;
+                int target = source.getTarget(sourceFirst + i);
+                reset(child, source.moves[sourceFirst + i]);
+
+                if (copies[target] != NONE) {
+                    links[child] = copies[target];
+
+                } else {
+                    copies[target] = child;
+                    copyStatistics(source, target, child);
+                    firstChildren.set(child, target);
+                }
+            }
+
+            childCounts[copy] = count;
+            firstChildren.set(copy, first);
+        }
+
+        return root;
+    }
+
+    // Returns where the last copySubtree put a node of its source pool, or NONE if it wasn't copied.
+    public int copyOf(int original) {
+        return (copies == null || original >= copies.length) ? NONE : copies[original];
+    }
+
+    // Returns the child of the node for the move, or NONE if it hasn't been expanded.
+    public int findChild(int node, int move) {
+        int expanded = getExpanded(node);
+        int first = getFirstChild(node);
+
+        for (int child = first; child < first + expanded; child++) {
+            if (moves[child] == move) {
+                return child;
+            }
+        }
+
+        return NONE;
+    }
+
+    // Links a child to the node holding the same position. The child must not have been expanded.
+    public void link(int child, int target) {
+        links[child] = target;
+    }
+
+    // Returns the node a child stands for: the node it is linked to, or the child itself.
+    public int getTarget(int child) {
+        return (links[child] == NONE) ? child : links[child];
+    }
+
+    // Returns whether the node's children have been allocated.
+    public boolean hasChildren(int node) {
+        return firstChildren.get(node) >= 0;
+    }
+
+    // Returns whether nobody has tried to allocate the node's children yet.
+    public boolean isUnexpanded(int node) {
+        return firstChildren.get(node) == NONE;
+    }
+
+    // Claims the next child of the node to expand and returns it, or NONE if all of them have been claimed.
+    public int claimChild(int node) {
+        int first = firstChildren.get(node);
+        if (first < 0 || claimed.get(node) >= childCounts[node]) {
+            return NONE;
+        }
+
+        int slot = claimed.getAndIncrement(node);
+        return (slot < childCounts[node]) ? first + slot : NONE;
+    }
+
+    // Returns the first child of the node. Only valid once it has children, so while other threads may be expanding
+    // the node, check getExpanded first: children stay published until the pool is cleared.
+    public int getFirstChild(int node) {
+        return firstChildren.get(node);
+    }
+
+    // Returns how many children of the node have been claimed, i.e. the first that many children are in the tree.
+    public int getExpanded(int node) {
+        return hasChildren(node) ? Math.min(claimed.get(node), childCounts[node]) : 0;
+    }
+
+    // Returns how many children the node has once fully expanded.
+    public int getChildCount(int node) {
+        return hasChildren(node) ? childCounts[node] : 0;
+    }
+
+    public int getMove(int node) {
+        return moves[node];
+    }
+
+    public int getPlays(int node) {
+        return plays.get(node);
+    }
+
+    public int getWins(int node) {
+        return wins.get(node);
+    }
+
+    public int getAmafPlays(int node) {
+        return (int) (amaf.get(node) >>> 32);
+    }
+
+    public int getAmafWins(int node) {
+        return (int) amaf.get(node);
+    }
+
+    public int getProof(int node) {
+        return proofs[node];
+    }
+
+    public boolean isProven(int node) {
+        return proofs[node] != UNPROVEN;
+    }
+
+    public void setProof(int node, int proof) {
+        proofs[node] = (byte) proof;
+    }
+
+    public void addPlay(int node) {
+        plays.incrementAndGet(node);
+    }
+
+    public void addWin(int node) {
+        wins.incrementAndGet(node);
+    }
+
+    // Adds an AMAF play, and a win with it if won.
+    public void addAmaf(int node, boolean won) {
+        amaf.addAndGet(node, won ? (1L << 32) + 1 : 1L << 32);
+    }
+
+    // Returns how many nodes are in use.
+    public int size() {
+        return Math.min(next.get(), capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    // Returns whether a block allocation failed since the last clear, after which every further one fails too.
+    public boolean isFull() {
+        return next.get() >= capacity;
+    }
+
+    // Returns how many times a block didn't fit.
+    public long getFailedAllocations() {
+        return failedAllocations.get();
+    }
+
+    // Allocates a single node.
+    private int allocate(int move) {
+        int node = next.getAndIncrement();
+        if (node >= capacity) {
+            failedAllocations.incrementAndGet();
+            return NONE;
+        }
+
+        reset(node, move);
+        return node;
+    }
+
+    private void copyStatistics(NodePool source, int from, int to) {
+        claimed.set(to, source.claimed.get(from));
+        plays.set(to, source.plays.get(from));
+        wins.set(to, source.wins.get(from));
+        amaf.set(to, source.amaf.get(from));
+        proofs[to] = source.proofs[from];
+    }
+
+    private void reset(int node, int move) {
+        moves[node] = move;
+        childCounts[node] = 0;
+        firstChildren.set(node, NONE);
+        claimed.set(node, 0);
+        plays.set(node, 0);
+        wins.set(node, 0);
+        amaf.set(node, 0);
+        links[node] = NONE;
+        proofs[node] = UNPROVEN;
+    }
+
+    @Override
+    public String toString() {
+        return "nodes: " + size() + " of " + capacity + ", failed allocations: " + failedAllocations.get();
+    }
+}
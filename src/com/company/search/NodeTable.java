@@ -0,0 +1,123 @@
+package com.company.search;
+
+import java.util.Arrays;
+
+// Finds the node holding a position in a NodePool by the position's Zobrist key, so an MCTS search can link a new
+// child to the node already there when the same position is reached by another move order. The tree then becomes a
+// DAG in which transpositions share their statistics and their subtree.
+//
+// The table has a fixed size. Keys hash to a bucket of a few entries, and when a bucket is full the entry whose node
+// has the fewest plays is evicted. A position that is evicted is still in the pool, it just isn't found anymore, so
+// a later transposition to it gets a node of its own.
+//
+// Not thread safe.
+public class NodeTable {
+
+    private static final int BUCKET_SIZE = 4;
+
+    private final int bucketMask;
+
+    private final long[] keys;
+    private final int[] nodes;
+
+    // Statistics
+    private long probes;
+    private long hits;
+    private long evictions;
+
+    // Creates a table with room for at least capacity entries, rounded up to a power of two.
+    public NodeTable(int capacity) {
+        int size = BUCKET_SIZE;
+        while (size < capacity) {
+            size <<= 1;
+        }
+
+        bucketMask = size - BUCKET_SIZE;
+        keys = new long[size];
+        nodes = new int[size];
+        Arrays.fill(nodes, NodePool.NONE);
+    }
+
+    // Returns how many bytes the table's arrays take up for a given capacity.
+    public static long bytesFor(int capacity) {
+        return (long) capacity * (8 + 4);
+    }
+
+    // Returns the node of the position, or NONE if it isn't in the table.
+    public int find(long key) {
+        probes++;
+        int bucket = (int) key & bucketMask;
+
+        for (int entry = bucket; entry < bucket + BUCKET_SIZE; entry++) {
+            if (nodes[entry] != NodePool.NONE && keys[entry] == key) {
+                hits++;
+                return nodes[entry];
+            }
+        }
+
+        return NodePool.NONE;
+    }
+
+    // Adds the node of a position, evicting the least played node of the bucket if it is full.
+    public void insert(NodePool pool, long key, int node) {
+        int bucket = (int) key & bucketMask;
+        int victim = bucket;
+
+        for (int entry = bucket; entry < bucket + BUCKET_SIZE; entry++) {
+            if (nodes[entry] == NodePool.NONE || keys[entry] == key) {
+                victim = entry;
+                break;
+            }
+
+            if (pool.getPlays(nodes[entry]) < pool.getPlays(nodes[victim])) {
+                victim = entry;
+            }
+        }
+
+        if (nodes[victim] != NodePool.NONE && keys[victim] != key) {
+            evictions++;
+        }
+
+        keys[victim] = key;
+        nodes[victim] = node;
+    }
+
+    // Points the entries at the nodes' places in a pool a subtree was just copied into, dropping the nodes that were
+    // left behind.
+    public void remap(NodePool pool) {
+        for (int entry = 0; entry < nodes.length; entry++) {
+            if (nodes[entry] != NodePool.NONE) {
+                nodes[entry] = pool.copyOf(nodes[entry]);
+            }
+        }
+    }
+
+    // Empties the table and resets the statistics.
+    public void clear() {
+        Arrays.fill(nodes, NodePool.NONE);
+        probes = 0;
+        hits = 0;
+        evictions = 0;
+    }
+
+    public int capacity() {
+        return nodes.length;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "probes: " + probes + ", hits: " + hits + ", evictions: " + evictions;
+    }
+}
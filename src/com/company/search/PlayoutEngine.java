@@ -0,0 +1,392 @@
+package com.company.search;
+
+import com.company.game.Board;
+import com.company.game.HexGrid;
+import com.company.utils.Pieces;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Plays random games to the end for the default policy of MCTS, without allocating anything per playout.
+//
+// The position is held as two bitsets like in Board. The EMPTY tiles are listed in an int array, shuffled with
+// Fisher-Yates using a xorshift generator, and handed out to the players in turn. Since Hex can't end in a draw, the
+// full board is decided by checking whether WHITE connects LEFT and RIGHT. That check is a flood fill over whole words
+// at a time: the set of WHITE stones reached from the LEFT edge is grown by shifting it onto its neighbors until it
+// touches the RIGHT edge or stops growing.
+//
+// With bridge saving on, the tiles are still taken in shuffled order, but a move that intrudes into a bridge of the
+// player to move next is answered by taking the bridge's other carrier tile instead. Bridges are matched with a table
+// indexed by the neighbor code of the move (see NeighborCodes), so checking a move is a handful of array reads.
+//
+// The tiles each player took during the last playout are kept as bitsets too, for AMAF.
+//
+// Not thread safe, every thread needs its own.
+public class PlayoutEngine {
+
+    // Spreads the default seeds of engines created at the same time.
+    private static final AtomicLong seeds = new AtomicLong(0x9E3779B97F4A7C15L);
+
+    // Marks a missing last move.
+    public static final int NO_MOVE = -1;
+
+    // Colors as used in neighbor codes.
+    private static final int EMPTY = NeighborCodes.EMPTY;
+    private static final int WHITE = NeighborCodes.WHITE;
+    private static final int BLACK = NeighborCodes.BLACK;
+
+    // SAVES[color][code] is the direction of the tile that saves a bridge of the color broken into by a stone with
+    // that neighbor code, or -1 if there is none.
+    private static final int[][] SAVES = new int[3][NeighborCodes.COUNT];
+
+    static {
+        for (int code = 0; code < NeighborCodes.COUNT; code++) {
+            SAVES[WHITE][code] = saveDirection(code, WHITE);
+            SAVES[BLACK][code] = saveDirection(code, BLACK);
+        }
+    }
+
+    private long state;
+
+    private boolean bridgeSaving;
+
+    private HexGrid hexGrid;
+    private int dimensions;
+    private int words;
+
+    // The position being played out.
+    private long[] white;
+    private long[] black;
+
+    // The tiles each player took during the last playout.
+    private long[] whitePlayed;
+    private long[] blackPlayed;
+
+    // The EMPTY tiles at the start of the playout, shuffled, and where each tile is in it.
+    private int[] empty;
+    private int[] positions;
+
+    // Colors of the tiles during a playout with bridge saving, and the neighbor code contribution of each tile's
+    // off-board neighbors.
+    private int[] colors;
+    private int[] edgeCodes;
+
+    // neighbors[6 * tile + direction] as in HexGrid, except that off-board neighbors are an extra tile past the end
+    // of colors that is always EMPTY, so codes can be summed without checking.
+    private int[] neighbors;
+
+    // Masks of the board's tiles, its edge columns and every column but the edge ones.
+    private long[] onBoard;
+    private long[] leftColumn;
+    private long[] rightColumn;
+    private long[] notLeftColumn;
+    private long[] notRightColumn;
+
+    // Scratch sets for the flood fill.
+    private long[] reached;
+    private long[] right;
+    private long[] left;
+    private long[] shifted;
+
+    // Statistics
+    private long playouts;
+
+    // Creates an engine with a seed of its own.
+    public PlayoutEngine() {
+        this(seeds.addAndGet(0x9E3779B97F4A7C15L) ^ System.nanoTime());
+    }
+
+    public PlayoutEngine(long seed) {
+        state = (seed == 0) ? 0x9E3779B97F4A7C15L : seed;
+    }
+
+    // Turns answering intrusions into bridges on or off.
+    public void setBridgeSaving(boolean bridgeSaving) {
+        this.bridgeSaving = bridgeSaving;
+    }
+
+    // Fills the EMPTY tiles of the Board at random, starting with the given player and alternating, and returns the
+    // winner. The Board itself is left as it was.
+    public Pieces playout(Board board, Pieces toMove) {
+        return playout(board, toMove, NO_MOVE);
+    }
+
+    // Same, where the last move is the tile the other player just took to reach the Board, or NO_MOVE. With bridge
+    // saving, the first move answers it if it broke into a bridge.
+    public Pieces playout(Board board, Pieces toMove, int lastMove) {
+        prepare(board);
+        playouts++;
+
+        board.copyBits(Pieces.WHITE, white);
+        board.copyBits(Pieces.BLACK, black);
+        Arrays.fill(whitePlayed, 0);
+        Arrays.fill(blackPlayed, 0);
+
+        int count = 0;
+        for (int word = 0; word < words; word++) {
+            long open = ~(white[word] | black[word]) & onBoard[word];
+
+            while (open != 0) {
+                empty[count++] = (word << 6) + Long.numberOfTrailingZeros(open);
+                open &= open - 1;
+            }
+        }
+
+        for (int i = count - 1; i > 0; i--) {
+            int j = nextInt(i + 1);
+            int temp = empty[i];
+            empty[i] = empty[j];
+            empty[j] = temp;
+        }
+
+        if (bridgeSaving) {
+            playSavingBridges(count, toMove, lastMove);
+
+        } else {
+            long[] first = (toMove == Pieces.WHITE) ? whitePlayed : blackPlayed;
+            long[] second = (toMove == Pieces.WHITE) ? blackPlayed : whitePlayed;
+
+            for (int i = 0; i < count; i++) {
+                int tile = empty[i];
+                long[] played = ((i & 1) == 0) ? first : second;
+                played[tile >>> 6] |= 1L << tile;
+            }
+        }
+
+        for (int word = 0; word < words; word++) {
+            white[word] |= whitePlayed[word];
+            black[word] |= blackPlayed[word];
+        }
+
+        return whiteConnects() ? Pieces.WHITE : Pieces.BLACK;
+    }
+
+    // Returns whether the player took the tile during the last playout.
+    public boolean played(Pieces val, int tile) {
+        long[] played = (val == Pieces.WHITE) ? whitePlayed : blackPlayed;
+        return (played[tile >>> 6] & (1L << tile)) != 0;
+    }
+
+    // Marks the tile as taken by the player in the last playout, e.g. for a move made in the tree before it.
+    public void addPlayed(Pieces val, int tile) {
+        long[] played = (val == Pieces.WHITE) ? whitePlayed : blackPlayed;
+        played[tile >>> 6] |= 1L << tile;
+    }
+
+    // Returns how many playouts this engine has run.
+    public long getPlayouts() {
+        return playouts;
+    }
+
+    // Takes the shuffled tiles in turn like the plain playout, except that when the last move broke into a bridge of
+    // the player to move, the other carrier is swapped forward and taken instead.
+    private void playSavingBridges(int count, Pieces toMove, int lastMove) {
+        for (int tile = 0; tile < hexGrid.size(); tile++) {
+            long bit = 1L << tile;
+            colors[tile] = ((white[tile >>> 6] & bit) != 0) ? WHITE : ((black[tile >>> 6] & bit) != 0) ? BLACK : EMPTY;
+        }
+
+        for (int i = 0; i < count; i++) {
+            positions[empty[i]] = i;
+        }
+
+        int color = (toMove == Pieces.WHITE) ? WHITE : BLACK;
+        int last = lastMove;
+
+        for (int i = 0; i < count; i++) {
+            if (last != NO_MOVE) {
+                int save = SAVES[color][code(last)];
+                int carrier = (save < 0) ? HexGrid.OFF_BOARD : hexGrid.neighbor(last, save);
+
+                // The carrier is EMPTY, so it's still among the tiles to take.
+                if (carrier != HexGrid.OFF_BOARD) {
+                    int j = positions[carrier];
+                    empty[j] = empty[i];
+                    positions[empty[j]] = j;
+                    empty[i] = carrier;
+                    positions[carrier] = i;
+                }
+            }
+
+            int tile = empty[i];
+            colors[tile] = color;
+            long[] played = (color == WHITE) ? whitePlayed : blackPlayed;
+            played[tile >>> 6] |= 1L << tile;
+
+            last = tile;
+            color = WHITE + BLACK - color;
+        }
+    }
+
+    // Returns the neighbor code of a tile, from the colors of the playout.
+    private int code(int tile) {
+        int code = edgeCodes[tile];
+
+        for (int dir = 0; dir < 6; dir++) {
+            code += colors[neighbors[6 * tile + dir]] * NeighborCodes.WEIGHTS[dir];
+        }
+
+        return code;
+    }
+
+    // Returns the direction of the EMPTY neighbor that sits between two neighbors of the color, i.e. the other
+    // carrier of a bridge through the tile, or -1 if the code has no such bridge.
+    private static int saveDirection(int code, int color) {
+        for (int dir = 0; dir < 6; dir++) {
+            int first = NeighborCodes.colorAt(code, dir);
+            int carrier = NeighborCodes.colorAt(code, (dir + 1) % 6);
+            int second = NeighborCodes.colorAt(code, (dir + 2) % 6);
+
+            if (first == color && carrier == EMPTY && second == color) {
+                return (dir + 1) % 6;
+            }
+        }
+
+        return -1;
+    }
+
+    // Returns a random number in [0, bound) using xorshift64*. The multiply and shift is very slightly biased for
+    // bounds that aren't powers of two, far too little to matter for shuffling a board.
+    private int nextInt(int bound) {
+        state ^= state >>> 12;
+        state ^= state << 25;
+        state ^= state >>> 27;
+        long random = (state * 0x2545F4914F6CDD1DL) >>> 32;
+        return (int) ((random * bound) >>> 32);
+    }
+
+    // Grows the WHITE stones reached from the LEFT edge until they reach the RIGHT edge or stop growing.
+    private boolean whiteConnects() {
+        boolean grew = false;
+
+        for (int word = 0; word < words; word++) {
+            reached[word] = white[word] & leftColumn[word];
+            grew |= reached[word] != 0;
+        }
+
+        while (grew) {
+
+            // Neighbors on the same row, and the rows above and below. The neighbors above a tile are the one
+            // straight up and the one up and to the right, below they are straight down and down and to the left.
+            shiftUp(reached, 1, right);
+            shiftDown(reached, 1, left);
+
+            for (int word = 0; word < words; word++) {
+                right[word] = (right[word] & notLeftColumn[word]) | reached[word];
+                left[word] = (left[word] & notRightColumn[word]) | reached[word];
+            }
+
+            grew = false;
+            boolean touches = false;
+
+            shiftDown(right, dimensions, shifted);
+            for (int word = 0; word < words; word++) {
+                right[word] |= left[word] | shifted[word];
+            }
+
+            shiftUp(left, dimensions, shifted);
+            for (int word = 0; word < words; word++) {
+                long next = (right[word] | shifted[word]) & white[word];
+                grew |= next != reached[word];
+                touches |= (next & rightColumn[word]) != 0;
+                reached[word] = next;
+            }
+
+            if (touches) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // Moves every bit of the set up by the given number of tiles.
+    private void shiftUp(long[] bits, int tiles, long[] result) {
+        int wordShift = tiles >>> 6;
+        int bitShift = tiles & 63;
+
+        for (int word = words - 1; word >= 0; word--) {
+            int from = word - wordShift;
+            long value = 0;
+
+            if (from >= 0) {
+                value = bits[from] << bitShift;
+
+                if (bitShift != 0 && from > 0) {
+                    value |= bits[from - 1] >>> (64 - bitShift);
+                }
+            }
+
+            result[word] = value;
+        }
+    }
+
+    // Moves every bit of the set down by the given number of tiles.
+    private void shiftDown(long[] bits, int tiles, long[] result) {
+        int wordShift = tiles >>> 6;
+        int bitShift = tiles & 63;
+
+        for (int word = 0; word < words; word++) {
+            int from = word + wordShift;
+            long value = 0;
+
+            if (from < words) {
+                value = bits[from] >>> bitShift;
+
+                if (bitShift != 0 && from + 1 < words) {
+                    value |= bits[from + 1] << (64 - bitShift);
+                }
+            }
+
+            result[word] = value;
+        }
+    }
+
+    // Sets up the arrays and masks for the Board's size.
+    private void prepare(Board board) {
+        if (hexGrid == board.getHexGrid()) {
+            return;
+        }
+
+        hexGrid = board.getHexGrid();
+        dimensions = hexGrid.getDimensions();
+        words = (hexGrid.size() + 63) >>> 6;
+
+        white = new long[words];
+        black = new long[words];
+        whitePlayed = new long[words];
+        blackPlayed = new long[words];
+        empty = new int[hexGrid.size()];
+        positions = new int[hexGrid.size()];
+        colors = new int[hexGrid.size() + 1];
+        edgeCodes = NeighborCodes.edgeCodes(hexGrid);
+        neighbors = new int[6 * hexGrid.size()];
+
+        onBoard = new long[words];
+        leftColumn = new long[words];
+        rightColumn = new long[words];
+        notLeftColumn = new long[words];
+        notRightColumn = new long[words];
+
+        reached = new long[words];
+        right = new long[words];
+        left = new long[words];
+        shifted = new long[words];
+
+        for (int tile = 0; tile < hexGrid.size(); tile++) {
+            long bit = 1L << tile;
+            int col = tile % dimensions;
+
+            onBoard[tile >>> 6] |= bit;
+            leftColumn[tile >>> 6] |= (col == 0) ? bit : 0;
+            rightColumn[tile >>> 6] |= (col == dimensions - 1) ? bit : 0;
+            notLeftColumn[tile >>> 6] |= (col != 0) ? bit : 0;
+            notRightColumn[tile >>> 6] |= (col != dimensions - 1) ? bit : 0;
+
+            for (int dir = 0; dir < 6; dir++) {
+                int neighbor = hexGrid.neighbor(tile, dir);
+                neighbors[6 * tile + dir] = (neighbor == HexGrid.OFF_BOARD) ? hexGrid.size() : neighbor;
+            }
+        }
+    }
+}
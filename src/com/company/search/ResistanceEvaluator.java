@@ -0,0 +1,174 @@
+package com.company.search;
+
+import com.company.game.Board;
+import com.company.game.HexGrid;
+import com.company.utils.Pieces;
+
+import java.util.Arrays;
+
+// Evaluates a position with the electrical circuit model of Hex. For each color the board becomes a resistor network
+// between that color's two edges: EMPTY tiles have a resistance of 1, the color's own stones almost none, and the
+// opponent's stones cut the tile out of the network. Two neighboring tiles are joined by a conductance of
+// 1 / (r1 + r2), and a tile on an edge is joined to it by 1 / r. The evaluation is the ratio of the two networks'
+// total conductances, so a lower resistance between your own edges than between your opponent's is good.
+//
+// Potentials are solved with successive over-relaxation over the neighbor table. The last solution for each color is
+// kept and used as the starting point of the next solve, and since sibling positions in a search differ by a stone
+// or two it usually converges in a handful of sweeps.
+public class ResistanceEvaluator implements Evaluator {
+
+    private static final double EMPTY_RESISTANCE = 1.0;
+    private static final double STONE_RESISTANCE = 0.05;
+
+    // A potential changing by less than this during a sweep counts as converged.
+    private static final double TOLERANCE = 1e-5;
+    private static final int MAX_SWEEPS = 400;
+    private static final double OVER_RELAXATION = 1.5;
+
+    // Keeps the ratio finite when one side is completely cut off.
+    private static final double MIN_CONDUCTANCE = 1e-9;
+
+    private HexGrid hexGrid;
+    private int dimensions;
+
+    // Scratch resistances per tile (infinite for cut out tiles) and warm started potentials for each color.
+    private double[] resistance;
+    private double[] whitePotential;
+    private double[] blackPotential;
+
+    // Statistics.
+    private long solves;
+    private long sweeps;
+
+    @Override
+    public double evaluate(Board board, Pieces player) {
+        prepare(board);
+
+        double white = conductance(board, Pieces.WHITE, whitePotential);
+        double black = conductance(board, Pieces.BLACK, blackPotential);
+
+        return player.equals(Pieces.BLACK) ? (black + MIN_CONDUCTANCE) / (white + MIN_CONDUCTANCE) :
+                                             (white + MIN_CONDUCTANCE) / (black + MIN_CONDUCTANCE);
+    }
+
+    // The warm start potentials can't be shared between threads, so copies start cold.
+    @Override
+    public Evaluator copy() {
+        return new ResistanceEvaluator();
+    }
+
+    // Returns the average number of relaxation sweeps per solve.
+    public double averageSweeps() {
+        return (solves == 0) ? 0 : (double) sweeps / solves;
+    }
+
+    // Sets up the buffers for the Board's size, throwing away the warm start if the size changed.
+    private void prepare(Board board) {
+        if (hexGrid != null && board.getDimensions() == dimensions) {
+            return;
+        }
+
+        dimensions = board.getDimensions();
+        hexGrid = board.getHexGrid();
+        resistance = new double[dimensions * dimensions];
+        whitePotential = new double[dimensions * dimensions];
+        blackPotential = new double[dimensions * dimensions];
+
+        Arrays.fill(whitePotential, 0.5);
+        Arrays.fill(blackPotential, 0.5);
+    }
+
+    // Solves the network for one color and returns the total conductance between its edges. The color's first edge
+    // (LEFT for WHITE, TOP for BLACK) is held at a potential of 1 and the other at 0.
+    private double conductance(Board board, Pieces color, double[] potential) {
+        Pieces opponent = Pieces.changePlayer(color);
+        int size = dimensions * dimensions;
+
+        for (int tile = 0; tile < size; tile++) {
+            Pieces val = board.getTile(tile);
+
+            if (val == opponent) {
+                resistance[tile] = Double.POSITIVE_INFINITY;
+                potential[tile] = 0;
+
+            } else {
+                resistance[tile] = (val == color) ? STONE_RESISTANCE : EMPTY_RESISTANCE;
+            }
+        }
+
+        solves++;
+        for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+            sweeps++;
+
+            if (relax(color, potential) < TOLERANCE) {
+                break;
+            }
+        }
+
+        // Current flowing out of the first edge.
+        double current = 0;
+        for (int tile = 0; tile < size; tile++) {
+            if (!Double.isInfinite(resistance[tile]) && onFirstEdge(color, tile)) {
+                current += (1 - potential[tile]) / resistance[tile];
+            }
+        }
+
+        // Over-relaxation can leave potentials a hair outside [0, 1] once a side is cut off.
+        return Math.max(current, 0);
+    }
+
+    // Runs one Gauss-Seidel sweep with over-relaxation and returns the largest change in potential.
+    private double relax(Pieces color, double[] potential) {
+        double maxChange = 0;
+
+        for (int tile = 0; tile < potential.length; tile++) {
+            double r = resistance[tile];
+
+            if (Double.isInfinite(r)) {
+                continue;
+            }
+
+            double totalConductance = 0;
+            double weightedPotential = 0;
+
+            for (int dir = 0; dir < 6; dir++) {
+                int neighbor = hexGrid.neighbor(tile, dir);
+
+                if (neighbor != HexGrid.OFF_BOARD && !Double.isInfinite(resistance[neighbor])) {
+                    double g = 1 / (r + resistance[neighbor]);
+                    totalConductance += g;
+                    weightedPotential += g * potential[neighbor];
+                }
+            }
+
+            if (onFirstEdge(color, tile)) {
+                totalConductance += 1 / r;
+                weightedPotential += 1 / r;
+            }
+
+            if (onSecondEdge(color, tile)) {
+                totalConductance += 1 / r;
+            }
+
+            if (totalConductance == 0) {
+                continue;
+            }
+
+            double next = potential[tile] + OVER_RELAXATION * (weightedPotential / totalConductance - potential[tile]);
+            maxChange = Math.max(maxChange, Math.abs(next - potential[tile]));
+            potential[tile] = next;
+        }
+
+        return maxChange;
+    }
+
+    // Returns true if the tile touches the edge held at a potential of 1.
+    private boolean onFirstEdge(Pieces color, int tile) {
+        return color == Pieces.WHITE ? tile % dimensions == 0 : tile < dimensions;
+    }
+
+    // Returns true if the tile touches the grounded edge.
+    private boolean onSecondEdge(Pieces color, int tile) {
+        return color == Pieces.WHITE ? tile % dimensions == dimensions - 1 : tile >= dimensions * (dimensions - 1);
+    }
+}
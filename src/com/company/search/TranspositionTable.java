@@ -0,0 +1,212 @@
+package com.company.search;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+// A fixed size transposition table for alpha beta search. Each entry stores the position key, the depth it was
+// searched to, what kind of bound the score is, the score and the best move found, in parallel primitive arrays.
+//
+// Replacement is depth-preferred: an entry is only overwritten by a search at least as deep, unless it is left over
+// from a previous move's search.
+//
+// The table can be shared by several searching threads without locks. Instead of the key itself, an entry stores the
+// key XORed with its score and info words. A probe XORs them back together and only trusts the entry if the result
+// is the key it was looking for, so an entry that is half written by another thread reads as a miss.
+public class TranspositionTable {
+
+    // Bound types.
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    // Marks an entry without a best move.
+    public static final int NO_MOVE = -1;
+
+    // Layout of the packed info int: 16 bits of move, 8 bits of depth, 2 bits of bound, 5 bits of generation and a
+    // bit that is set in every entry, so that an info word of 0 means the slot was never written.
+    private static final int MOVE_BITS = 16;
+    private static final int DEPTH_SHIFT = 16;
+    private static final int BOUND_SHIFT = 24;
+    private static final int GENERATION_SHIFT = 26;
+    private static final int MOVE_MASK = (1 << MOVE_BITS) - 1;
+    private static final int GENERATION_MASK = 0x1F;
+    private static final int USED = 1 << 31;
+
+    private final int indexMask;
+
+    private final long[] checks;
+    private final long[] scores;
+    private final int[] info;
+
+    // Incremented for every new move so older entries can be recognized and replaced.
+    private volatile int generation;
+
+    // Statistics. Adders since several threads may be counting at once.
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder replacements = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    // The contents of an entry found by a probe. Each searching thread keeps its own.
+    public static class Entry {
+
+        private int depth;
+        private int bound;
+        private double score;
+        private int move;
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public int getBound() {
+            return bound;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public int getMove() {
+            return move;
+        }
+    }
+
+    // Creates a table with room for at least capacity entries, rounded up to a power of two.
+    public TranspositionTable(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+
+        indexMask = size - 1;
+        checks = new long[size];
+        scores = new long[size];
+        info = new int[size];
+        generation = 0;
+    }
+
+    // Returns how many bytes the table's arrays take up for a given capacity. Handy for sizing it.
+    public static long bytesFor(int capacity) {
+        return (long) capacity * (8 + 8 + 4);
+    }
+
+    // Called at the start of every move.
+    public void newSearch() {
+        generation = (generation + 1) & GENERATION_MASK;
+    }
+
+    // Looks up a position. Returns true on a hit, in which case the entry is copied into the given Entry.
+    public boolean probe(long key, Entry entry) {
+        probes.increment();
+        int index = (int) key & indexMask;
+
+        int storedInfo = info[index];
+        long storedScore = scores[index];
+
+        if (storedInfo == 0 || (checks[index] ^ storedScore ^ storedInfo) != key) {
+            return false;
+        }
+
+        hits.increment();
+        entry.score = Double.longBitsToDouble(storedScore);
+        entry.depth = (storedInfo >>> DEPTH_SHIFT) & 0xFF;
+        entry.bound = (storedInfo >>> BOUND_SHIFT) & 0x3;
+        int storedMove = storedInfo & MOVE_MASK;
+        entry.move = (storedMove == MOVE_MASK) ? NO_MOVE : storedMove;
+        return true;
+    }
+
+    // Stores the result of searching a position, unless a deeper result from the current search is in the way.
+    public void store(long key, int depth, int bound, double score, int move) {
+        int index = (int) key & indexMask;
+        int storedInfo = info[index];
+
+        if (storedInfo != 0) {
+            boolean sameKey = (checks[index] ^ scores[index] ^ storedInfo) == key;
+            boolean current = ((storedInfo >>> GENERATION_SHIFT) & GENERATION_MASK) == generation;
+            boolean deeper = ((storedInfo >>> DEPTH_SHIFT) & 0xFF) > depth;
+
+            if (!sameKey && current && deeper) {
+                rejections.increment();
+                return;
+            }
+
+            if (!sameKey) {
+                replacements.increment();
+            }
+        }
+
+        long newScore = Double.doubleToRawLongBits(score);
+        int newInfo = USED |
+                      (move == NO_MOVE ? MOVE_MASK : move) |
+                      (Math.min(depth, 0xFF) << DEPTH_SHIFT) |
+                      (bound << BOUND_SHIFT) |
+                      (generation << GENERATION_SHIFT);
+
+        stores.increment();
+        checks[index] = key ^ newScore ^ newInfo;
+        scores[index] = newScore;
+        info[index] = newInfo;
+    }
+
+    // Empties the table and resets the statistics. Not safe while other threads are using the table.
+    public void clear() {
+        Arrays.fill(info, 0);
+        probes.reset();
+        hits.reset();
+        stores.reset();
+        replacements.reset();
+        rejections.reset();
+    }
+
+    // Returns the number of entries the table holds.
+    public int capacity() {
+        return info.length;
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getStores() {
+        return stores.sum();
+    }
+
+    public long getReplacements() {
+        return replacements.sum();
+    }
+
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    // Returns the fraction of probes that found their position.
+    public double hitRate() {
+        long numProbes = getProbes();
+        return (numProbes == 0) ? 0 : (double) getHits() / numProbes;
+    }
+
+    // Returns the fraction of slots in use.
+    public double fillRate() {
+        int used = 0;
+        for (int entry : info) {
+            if (entry != 0) {
+                used++;
+            }
+        }
+
+        return (double) used / info.length;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("probes: %d, hits: %d, stores: %d, replacements: %d, rejections: %d, hit rate: %.3f",
+                             getProbes(), getHits(), getStores(), getReplacements(), getRejections(), hitRate());
+    }
+}
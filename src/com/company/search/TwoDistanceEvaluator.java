@@ -0,0 +1,19 @@
+package com.company.search;
+
+import com.company.game.Board;
+import com.company.utils.Pieces;
+
+// Evaluates a position with the Board's two-distance heuristic.
+public class TwoDistanceEvaluator implements Evaluator {
+
+    @Override
+    public double evaluate(Board board, Pieces player) {
+        return board.calculateHeuristic(player);
+    }
+
+    // The two-distance maps belong to the Board, so there's no state to share.
+    @Override
+    public Evaluator copy() {
+        return this;
+    }
+}
@@ -0,0 +1,439 @@
+package com.company.search;
+
+import com.company.game.Board;
+import com.company.game.HexGrid;
+import com.company.utils.Pieces;
+import com.company.utils.Side;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Finds virtual connections, i.e. connections a color can keep even if the opponent moves first, and uses them to
+// find the must-play region: the tiles the player to move has to play in because otherwise the opponent can connect
+// its edges no matter what.
+//
+// A cut-down H-search. The connections known are between a stone and
+//   - another stone, by a bridge: two EMPTY tiles next to both,
+//   - the color's own edge, by template II (a stone on the second row with the two EMPTY tiles in front of it) or
+//     template IIIa, the ziggurat (a stone on the third row), in either orientation.
+// Each connection has a carrier, the EMPTY tiles it needs. Connections are chained from one edge to the other
+// through groups of stones, and a chain is only a connection if the carriers of its links don't overlap.
+//
+// The connections of each stone are cached and only recalculated for stones near tiles that changed since the last
+// Board looked at, so walking a search tree one move at a time stays cheap.
+public class VirtualConnections {
+
+    // How many steps the chain search may take before giving up, so odd positions can't blow up.
+    private static final int MAX_CHAIN_STEPS = 20000;
+
+    // Connections reach at most this far from their stone.
+    private static final int RADIUS = 3;
+
+    // Carrier offsets of the edge templates as (row, col) pairs, for a stone that many rows below the top edge. The
+    // other edges use the same offsets turned to face them.
+    private static final int[][] SECOND_ROW_TEMPLATES = {
+            {-1, 0, -1, 1}
+    };
+    private static final int[][] THIRD_ROW_TEMPLATES = {
+            {0, 1, -1, 0, -1, 1, -1, 2, -2, 0, -2, 1, -2, 2, -2, 3},
+            {0, -1, -1, -1, -1, 0, -1, 1, -2, -1, -2, 0, -2, 1, -2, 2}
+    };
+
+    private HexGrid hexGrid;
+    private int dimensions;
+    private int size;
+
+    // Tiles within RADIUS of each tile.
+    private int[][] nearby;
+
+    // The colors the cached connections were calculated for, and which stones need theirs recalculated.
+    private Pieces[] seen;
+    private boolean[] dirty;
+
+    // Connections of the stone on each tile. Targets are tiles, or size + Side.ordinal() for an edge.
+    private List<Link>[] links;
+
+    // Groups of the color being searched, with the edges as nodes size + Side.ordinal().
+    private int[] parent;
+    private List<Link>[] groupLinks;
+
+    // State of the chain search.
+    private boolean[] used;
+    private boolean[] visited;
+    private int steps;
+    private final List<Link> chain = new ArrayList<>();
+
+    // Union of the carriers of the last chain found.
+    private boolean[] carrier;
+    private int carrierSize;
+
+    // Statistics
+    private long recalculated;
+
+    // Returns whether the player to move has to play in a must-play region, i.e. the opponent has a chain connecting
+    // its edges. The region is the carrier of that chain, see inMustPlay. If the opponent is already connected there
+    // is no region.
+    public boolean findMustPlay(Board board, Pieces toMove) {
+        update(board);
+
+        return findChain(board, Pieces.changePlayer(toMove)) && carrierSize > 0;
+    }
+
+    // Returns whether the tile is in the must-play region found by the last call to findMustPlay.
+    public boolean inMustPlay(int tile) {
+        return carrier[tile];
+    }
+
+    // Returns how many tiles are in the must-play region found by the last call to findMustPlay.
+    public int getMustPlaySize() {
+        return carrierSize;
+    }
+
+    // Returns how many stones had their connections recalculated so far.
+    public long getRecalculated() {
+        return recalculated;
+    }
+
+    // Looks for a chain of the color from one of its edges to the other and keeps the union of its carriers.
+    private boolean findChain(Board board, Pieces color) {
+        Side from = color.equals(Pieces.WHITE) ? Side.LEFT : Side.TOP;
+        Side to = color.equals(Pieces.WHITE) ? Side.RIGHT : Side.BOTTOM;
+
+        buildGroups(board, color);
+
+        Arrays.fill(used, false);
+        Arrays.fill(visited, false);
+        Arrays.fill(carrier, false);
+        carrierSize = 0;
+        steps = 0;
+        chain.clear();
+
+        int start = find(size + from.ordinal());
+        int end = find(size + to.ordinal());
+        visited[start] = true;
+
+        if (!search(start, end)) {
+            return false;
+        }
+
+        for (Link link : chain) {
+            for (int tile : link.carrier) {
+                carrier[tile] = true;
+                carrierSize++;
+            }
+        }
+
+        return true;
+    }
+
+    // Depth first search for a chain of links with disjoint carriers from the group to the end group.
+    private boolean search(int group, int end) {
+        if (group == end) {
+            return true;
+        }
+
+        if (++steps > MAX_CHAIN_STEPS) {
+            return false;
+        }
+
+        for (Link link : groupLinks[group]) {
+            int next = link.target;
+            if (visited[next] || !claim(link.carrier, true)) {
+                continue;
+            }
+
+            visited[next] = true;
+            chain.add(link);
+
+            if (search(next, end)) {
+                return true;
+            }
+
+            chain.remove(chain.size() - 1);
+            visited[next] = false;
+            claim(link.carrier, false);
+        }
+
+        return false;
+    }
+
+    // Marks (or unmarks) a carrier as used. Marking fails and changes nothing if a tile is already used.
+    private boolean claim(int[] tiles, boolean mark) {
+        if (mark) {
+            for (int tile : tiles) {
+                if (used[tile]) {
+                    return false;
+                }
+            }
+        }
+
+        for (int tile : tiles) {
+            used[tile] = mark;
+        }
+
+        return true;
+    }
+
+    // Groups the color's stones, joins stones touching its edges to them, and turns the stones' connections into
+    // connections between groups.
+    private void buildGroups(Board board, Pieces color) {
+        for (int node = 0; node < parent.length; node++) {
+            parent[node] = node;
+            groupLinks[node].clear();
+        }
+
+        for (int tile = 0; tile < size; tile++) {
+            if (board.getTile(tile) != color) {
+                continue;
+            }
+
+            for (int dir = 0; dir < 6; dir++) {
+                int neighbor = hexGrid.neighbor(tile, dir);
+
+                if (neighbor != HexGrid.OFF_BOARD && board.getTile(neighbor) == color) {
+                    union(tile, neighbor);
+                }
+            }
+
+            for (Side side : edges(color)) {
+                if (distanceToEdge(tile, side) == 0) {
+                    union(tile, size + side.ordinal());
+                }
+            }
+        }
+
+        for (int tile = 0; tile < size; tile++) {
+            if (board.getTile(tile) != color) {
+                continue;
+            }
+
+            int group = find(tile);
+            for (Link link : links[tile]) {
+                int other = find(link.target);
+
+                if (other != group) {
+                    groupLinks[group].add(new Link(other, link.carrier));
+                    groupLinks[other].add(new Link(group, link.carrier));
+                }
+            }
+        }
+    }
+
+    // Brings the cached connections up to date with the Board.
+    private void update(Board board) {
+        prepare(board);
+
+        for (int tile = 0; tile < size; tile++) {
+            Pieces val = board.getTile(tile);
+
+            if (val != seen[tile]) {
+                seen[tile] = val;
+
+                for (int near : nearby[tile]) {
+                    dirty[near] = true;
+                }
+            }
+        }
+
+        for (int tile = 0; tile < size; tile++) {
+            if (dirty[tile]) {
+                dirty[tile] = false;
+                findLinks(board, tile);
+            }
+        }
+    }
+
+    // Recalculates the connections of the stone on a tile.
+    private void findLinks(Board board, int tile) {
+        links[tile].clear();
+
+        Pieces color = board.getTile(tile);
+        if (color == Pieces.EMPTY) {
+            return;
+        }
+
+        recalculated++;
+
+        // Bridges. The tile past the neighbor in the next direction over is a bridge away, with the two neighbors in
+        // between. Only bridges to higher tiles are kept, the other end links back when groups are built.
+        for (int dir = 0; dir < 6; dir++) {
+            int first = hexGrid.neighbor(tile, dir);
+            int second = hexGrid.neighbor(tile, (dir + 1) % 6);
+            if (first == HexGrid.OFF_BOARD || second == HexGrid.OFF_BOARD) {
+                continue;
+            }
+
+            int target = hexGrid.neighbor(first, (dir + 1) % 6);
+            if (target > tile && board.getTile(target) == color && board.getTile(first) == Pieces.EMPTY &&
+                    board.getTile(second) == Pieces.EMPTY) {
+                links[tile].add(new Link(target, new int[]{first, second}));
+            }
+        }
+
+        // Edge templates.
+        for (Side side : edges(color)) {
+            int distance = distanceToEdge(tile, side);
+            int[][] templates = (distance == 1) ? SECOND_ROW_TEMPLATES :
+                                (distance == 2) ? THIRD_ROW_TEMPLATES : new int[0][];
+
+            for (int[] template : templates) {
+                int[] tiles = place(board, tile, side, template);
+
+                if (tiles != null) {
+                    links[tile].add(new Link(size + side.ordinal(), tiles));
+                }
+            }
+        }
+    }
+
+    // Returns the carrier of a template turned to face the side for a stone on the tile, or null if a tile of the
+    // carrier is off the Board or not EMPTY.
+    private int[] place(Board board, int tile, Side side, int[] template) {
+        int row = tile / dimensions;
+        int col = tile % dimensions;
+        int[] tiles = new int[template.length / 2];
+
+        for (int i = 0; i < tiles.length; i++) {
+            int rowOffset = template[2 * i];
+            int colOffset = template[2 * i + 1];
+
+            // The top edge turned around for the bottom, and both mirrored across the diagonal for left and right.
+            int carrierRow;
+            int carrierCol;
+            switch (side) {
+                case TOP:
+                    carrierRow = row + rowOffset;
+                    carrierCol = col + colOffset;
+                    break;
+                case BOTTOM:
+                    carrierRow = row - rowOffset;
+                    carrierCol = col - colOffset;
+                    break;
+                case LEFT:
+                    carrierRow = row + colOffset;
+                    carrierCol = col + rowOffset;
+                    break;
+                default:
+                    carrierRow = row - colOffset;
+                    carrierCol = col - rowOffset;
+                    break;
+            }
+
+            if (carrierRow < 0 || carrierRow >= dimensions || carrierCol < 0 || carrierCol >= dimensions) {
+                return null;
+            }
+
+            tiles[i] = carrierRow * dimensions + carrierCol;
+            if (board.getTile(tiles[i]) != Pieces.EMPTY) {
+                return null;
+            }
+        }
+
+        return tiles;
+    }
+
+    // Returns how many rows or columns there are between the tile and the edge.
+    private int distanceToEdge(int tile, Side side) {
+        switch (side) {
+            case TOP:
+                return tile / dimensions;
+            case BOTTOM:
+                return dimensions - 1 - tile / dimensions;
+            case LEFT:
+                return tile % dimensions;
+            default:
+                return dimensions - 1 - tile % dimensions;
+        }
+    }
+
+    // WHITE connects left and right, BLACK top and bottom.
+    private static Side[] edges(Pieces color) {
+        return color.equals(Pieces.WHITE) ? new Side[]{Side.LEFT, Side.RIGHT} : new Side[]{Side.TOP, Side.BOTTOM};
+    }
+
+    private int find(int node) {
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+
+        return node;
+    }
+
+    private void union(int first, int second) {
+        parent[find(first)] = find(second);
+    }
+
+    // Sets up the arrays for the Board's size. Everything is dirty after a size change.
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void prepare(Board board) {
+        if (hexGrid == board.getHexGrid()) {
+            return;
+        }
+
+        hexGrid = board.getHexGrid();
+        dimensions = hexGrid.getDimensions();
+        size = hexGrid.size();
+        int nodes = size + Side.values().length;
+
+        seen = new Pieces[size];
+        dirty = new boolean[size];
+        links = new List[size];
+        parent = new int[nodes];
+        groupLinks = new List[nodes];
+        used = new boolean[size];
+        visited = new boolean[nodes];
+        carrier = new boolean[size];
+
+        for (int tile = 0; tile < size; tile++) {
+            links[tile] = new ArrayList<>();
+        }
+
+        for (int node = 0; node < nodes; node++) {
+            groupLinks[node] = new ArrayList<>();
+        }
+
+        nearby = new int[size][];
+        int[] distance = new int[size];
+        int[] queue = new int[size];
+
+        for (int tile = 0; tile < size; tile++) {
+            Arrays.fill(distance, -1);
+            distance[tile] = 0;
+            queue[0] = tile;
+            int head = 0;
+            int tail = 1;
+
+            while (head < tail) {
+                int current = queue[head++];
+                if (distance[current] == RADIUS) {
+                    continue;
+                }
+
+                for (int dir = 0; dir < 6; dir++) {
+                    int neighbor = hexGrid.neighbor(current, dir);
+
+                    if (neighbor != HexGrid.OFF_BOARD && distance[neighbor] < 0) {
+                        distance[neighbor] = distance[current] + 1;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+
+            nearby[tile] = Arrays.copyOf(queue, tail);
+        }
+    }
+
+    // A connection to a target tile, edge or group, and the EMPTY tiles it needs.
+    private static class Link {
+
+        final int target;
+        final int[] carrier;
+
+        Link(int target, int[] carrier) {
+            this.target = target;
+            this.carrier = carrier;
+        }
+    }
+}
@@ -2,9 +2,7 @@ package com.company.utils;
 
 import com.company.game.Board;
 
-import java.awt.*;
-import java.util.*;
-import java.util.List;
+import java.util.Scanner;
 
 public class utils {
 
@@ -54,108 +52,4 @@ public class utils {
     public static boolean overLappingMoveCheck(int row, int col, Board board) {
         return board.getValue(row, col).equals(Pieces.EMPTY);
     }
-
-    public static boolean terminateWhite(Board board) {
-        Set<Point> used = new HashSet<>();
-
-        for (int row = 0; row < board.getDimensions(); row++) {
-
-            if (board.getValue(row, 0).equals(Pieces.WHITE)) {
-                if (board.getDimensions() == 1) {
-                    return true;
-                }
-
-                Point cur = new Point(row, 0);
-                used.add(cur);
-
-                for (Point neighbor : neighboringPoints(Pieces.WHITE, row, 0, board)) {
-
-                    if (terminateHelper(Pieces.WHITE, neighbor.x, neighbor.y, used, board)) {
-                        return true;
-                    }
-                }
-            }
-        }
-
-        return false;
-    }
-
-    public static boolean terminateBlack(Board board) {
-        Set<Point> used = new HashSet<>();
-
-        for (int col = 0; col < board.getDimensions(); col++) {
-
-            if (board.getValue(0, col).equals(Pieces.BLACK)) {
-                if (board.getDimensions() == 1) {
-                    return true;
-                }
-
-                Point cur = new Point(0, col);
-                used.add(cur);
-
-                for (Point neighbor : neighboringPoints(Pieces.BLACK, 0, col, board)) {
-
-                    if (terminateHelper(Pieces.BLACK, neighbor.x, neighbor.y, used, board)) {
-                        return true;
-                    }
-                }
-            }
-        }
-
-        return false;
-    }
-
-    private static boolean terminateHelper(Pieces player, int row, int col, Set<Point> used, Board board) {
-        if (used.contains(new Point(row, col))) {
-            return false;
-        }
-
-        switch (player) {
-            case WHITE:
-                if (col == board.getDimensions() - 1) {
-                    return true;
-                }
-                break;
-            case BLACK:
-                if (row == board.getDimensions() - 1) {
-                    return true;
-                }
-                break;
-            default:
-                break;
-        }
-
-        Point cur = new Point(row, col);
-        used.add(cur);
-
-        for (Point neighbor : neighboringPoints(player, row, col, board)) {
-
-            if (terminateHelper(player, neighbor.x, neighbor.y, used, board)) {
-                return true;
-            }
-        }
-
-        used.remove(cur);
-
-        return false;
-    }
-
-    private static List<Point> neighboringPoints(Pieces player, int row, int col, Board board) {
-        List<Point> neighbors = new ArrayList<>();
-
-        addToNeighbors(player, neighbors, row + 1, col, board);
-        addToNeighbors(player, neighbors, row - 1, col, board);
-        addToNeighbors(player, neighbors, row, col + 1, board);
-        addToNeighbors(player, neighbors, row, col - 1, board);
-        addToNeighbors(player, neighbors, row + 1, col - 1, board);
-        addToNeighbors(player, neighbors, row - 1, col + 1, board);
-
-        return neighbors;
-    }
-
-    private static void addToNeighbors(Pieces player, List<Point> neighbors, int row, int col, Board board) {
-        if (inRange(row, col, board) && board.getValue(row, col).equals(player)) {
-            neighbors.add(new Point(row, col));
-        }
-    }
 }